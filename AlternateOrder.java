@@ -0,0 +1,295 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+   AlternateOrder.java
+
+   Checks the alternate solutions of each problem in the order of how often they have accepted an
+   answer, instead of the order of the solution file, so that the answer most students give is
+   usually decided by the first or second check.
+
+   The solution file still decides the grade. An alternate is only moved ahead of an earlier one if
+   no answer could be accepted by both of them, so the alternate that accepts an answer is always
+   the first one in the solution file that accepts it, just as with AnswerKey.findMatch(...). Two
+   alternates are treated as conflicting if either one accepts the other's value, if their ranges
+   overlap, or if they are the same list in a different order.
+
+   The number of answers each alternate has accepted is saved in the .grader folder next to the
+   solution file, as "Solutions_NAME.txt.hits", after an assignment is graded, and is loaded with
+   the compiled key in later runs. Counts are saved by problem number and solution value, so they
+   are kept for the lines of a solution file that have not changed when it is edited.
+
+   Adaptive ordering is on unless Grader is started with -Dgrader.adaptiveOrder=false
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see AnswerKey
+   @see GradingSession
+*/
+public final class AlternateOrder {
+
+   public static final boolean ENABLED = !"false".equalsIgnoreCase( System.getProperty("grader.adaptiveOrder") );
+
+   public static final String HITS_EXTENSION = ".hits";
+
+   private static final int HITS_MAGIC   = 0x47484954; //"GHIT"
+   private static final int HITS_VERSION = 1;
+
+   /*The order of a problem is worked out again after this many of its answers are accepted*/
+   private static final int REORDER_INTERVAL = 64;
+
+   private final AnswerKey key;
+   private final AtomicLongArray hits;
+   private final AtomicLongArray problemHits;
+   private final AtomicReferenceArray<int[]> orders;
+   private final AtomicReferenceArray<boolean[]> conflicts;
+   private volatile boolean unsaved = false; //Only written when it changes, so grading threads do not contend on it
+
+   /**
+      @param key The compiled solution file
+   */
+   public AlternateOrder( AnswerKey key ) {
+      this.key = key;
+      hits        = new AtomicLongArray( key.alternateCount() );
+      problemHits = new AtomicLongArray( key.problemCount() );
+      orders      = new AtomicReferenceArray<int[]>( key.problemCount() );
+      conflicts   = new AtomicReferenceArray<boolean[]>( key.problemCount() );
+   }
+
+   /**
+      Find the first alternate solution of a problem, in the order of the solution file, that
+      accepts the student's answer, and count the answer for that alternate
+
+      @param problem The position of the problem in the key
+      @param response The student's answer
+      @param listOrderMatters False if lists of values may be given in any order
+      @return int The alternate that accepts the answer, or -1 if none do
+   */
+   public int findMatch( int problem, AnswerKey.Response response, boolean listOrderMatters ) {
+      int[] order = orders.get( problem );
+      int match = -1;
+      if( order == null ) {
+         match = key.findMatch( problem, response, listOrderMatters );
+      } else {
+         for( int alt : order ) {
+            if( key.matches( alt, response, listOrderMatters ) ) {
+               match = alt;
+               break;
+            }
+         }
+      }
+
+      if( match != -1 && key.alternateCount( problem ) > 1 ) {
+         hits.incrementAndGet( match );
+         if( !unsaved ) unsaved = true;
+         if( problemHits.incrementAndGet( problem ) % REORDER_INTERVAL == 0 )
+            reorder( problem );
+      }
+
+      return match;
+   }
+
+   /**
+      Get the number of answers that an alternate has accepted, including earlier runs
+
+      @param alt The alternate solution
+      @return long The number of answers
+   */
+   public long getHits( int alt ) {
+      return hits.get( alt );
+   }
+
+   /**
+      Sort the alternates of a problem by their hits, most first, without moving an alternate
+      ahead of an earlier one that it conflicts with. Alternates with the same number of hits
+      keep the order of the solution file
+
+      @param problem The position of the problem in the key
+   */
+   private void reorder( int problem ) {
+      int first = key.firstAlternate( problem );
+      int count = key.alternateCount( problem );
+      boolean[] conflict = getConflicts( problem );
+
+      int[] order = new int[ count ];
+      boolean[] placed = new boolean[ count ];
+      boolean changed = false;
+      for( int position = 0; position < count; position++ ) {
+         int best = -1;
+         for( int i = 0; i < count; i++ ) {
+            if( placed[i] || !isReady( i, placed, conflict, count ) ) continue;
+            if( best == -1 || hits.get( first + i ) > hits.get( first + best ) ) best = i;
+         }
+
+         placed[ best ] = true;
+         order[ position ] = first + best;
+         changed |= best != position;
+      }
+
+      orders.set( problem, changed ? order : null );
+   }
+
+   /**
+      @return boolean True if every earlier alternate that conflicts with alternate i has been placed
+   */
+   private static boolean isReady( int i, boolean[] placed, boolean[] conflict, int count ) {
+      for( int earlier = 0; earlier < i; earlier++ )
+         if( !placed[ earlier ] && conflict[ earlier * count + i ] ) return false;
+
+      return true;
+   }
+
+   /**
+      Find the pairs of alternates of a problem that might both accept the same answer. The pairs
+      are only worked out once for each problem, since the key does not change
+
+      @param problem The position of the problem in the key
+      @return boolean[] conflict[ a * count + b ] is true if alternates a and b conflict
+   */
+   private boolean[] getConflicts( int problem ) {
+      boolean[] conflict = conflicts.get( problem );
+      if( conflict != null ) return conflict;
+
+      int first = key.firstAlternate( problem );
+      int count = key.alternateCount( problem );
+      conflict = new boolean[ count * count ];
+      for( int a = 0; a < count; a++ ) {
+         for( int b = a + 1; b < count; b++ ) {
+            boolean overlap = mayOverlap( first + a, first + b );
+            conflict[ a * count + b ] = overlap;
+            conflict[ b * count + a ] = overlap;
+         }
+      }
+
+      conflicts.set( problem, conflict );
+      return conflict;
+   }
+
+   /**
+      Check whether any answer might be accepted by both alternates. Each alternate accepts its
+      own value, numbers within its range, and lists with the same values in another order. This
+      errs on the side of finding a conflict
+
+      @param a One alternate solution
+      @param b Another alternate solution of the same problem
+      @return boolean True if the alternates might accept the same answer
+   */
+   private boolean mayOverlap( int a, int b ) {
+      if( key.matches( b, new AnswerKey.Response( key.value( a ) ), false ) ) return true;
+      if( key.matches( a, new AnswerKey.Response( key.value( b ) ), false ) ) return true;
+
+      if( (key.flags( a ) & key.flags( b ) & AnswerKey.NUMERIC) != 0 ) {
+         double distance = Math.abs( key.numericValue( a ) - key.numericValue( b ) );
+         double slack = 1e-9 * (1.0 + Math.abs( key.numericValue( a ) ) + Math.abs( key.numericValue( b ) ));
+         if( !(distance > key.maxRange( a ) + key.maxRange( b ) + slack) ) return true;
+      }
+
+      String listKey = key.listKey( a );
+      return listKey != null && listKey.equals( key.listKey( b ) );
+   }
+
+   /**
+      Load the saved hits of a solution file, if there are any, and order the alternates by them
+
+      @param key The compiled solution file
+      @param solutionFile The solution text file that the key was compiled from
+      @return AlternateOrder The order of the alternates of the key
+   */
+   public static AlternateOrder load( AnswerKey key, File solutionFile ) {
+      AlternateOrder order = new AlternateOrder( key );
+      File hitsFile = getHitsFile( solutionFile );
+      if( !hitsFile.exists() ) return order;
+
+      HashMap<String, Long> saved = new HashMap<String, Long>();
+      try( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( hitsFile ) ) ) ) {
+         if( in.readInt() != HITS_MAGIC || in.readInt() != HITS_VERSION ) return order;
+         int entries = in.readInt();
+         for( int i = 0; i < entries; i++ )
+            saved.put( in.readUTF() + "\u0000" + in.readUTF(), in.readLong() );
+      } catch( IOException e ) {
+         return order; //A damaged file only loses the counts
+      }
+
+      for( int p = 0; p < key.problemCount(); p++ ) {
+         int first = key.firstAlternate( p );
+         for( int alt = first; alt < first + key.alternateCount( p ); alt++ ) {
+            Long count = saved.remove( key.problemId( p ) + "\u0000" + key.value( alt ) );
+            if( count != null ) order.hits.set( alt, count );
+         }
+         if( key.alternateCount( p ) > 1 ) order.reorder( p );
+      }
+
+      return order;
+   }
+
+   /**
+      Save the hits of every alternate, if any answers have been counted since they were last
+      saved. The file is written to a temporary file of its own and then moved into place, so two
+      processes saving at once do not write to the same file. Failures are not fatal, since the
+      counts only affect the speed of grading
+
+      @param solutionFile The solution text file that the key was compiled from
+   */
+   public void save( File solutionFile ) {
+      if( !unsaved ) return;
+      unsaved = false;
+
+      File hitsFile = getHitsFile( solutionFile );
+      hitsFile.getParentFile().mkdirs();
+      Path temp = null;
+
+      try {
+         temp = Files.createTempFile( hitsFile.getParentFile().toPath(), hitsFile.getName(), ".tmp" );
+         int entries = 0;
+         for( int alt = 0; alt < key.alternateCount(); alt++ )
+            if( hits.get( alt ) > 0 ) entries++;
+
+         try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( temp ) ) ) ) {
+            out.writeInt( HITS_MAGIC );
+            out.writeInt( HITS_VERSION );
+            out.writeInt( entries );
+            for( int p = 0; p < key.problemCount(); p++ ) {
+               int first = key.firstAlternate( p );
+               for( int alt = first; alt < first + key.alternateCount( p ); alt++ ) {
+                  if( hits.get( alt ) == 0 ) continue;
+                  out.writeUTF( key.problemId( p ) );
+                  out.writeUTF( key.value( alt ) );
+                  out.writeLong( hits.get( alt ) );
+               }
+            }
+         }
+
+         try {
+            Files.move( temp, hitsFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE );
+         } catch( AtomicMoveNotSupportedException e ) {
+            Files.move( temp, hitsFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+         }
+      } catch( IOException e ) {
+         if( temp != null ) temp.toFile().delete();
+      }
+   }
+
+   /**
+      Get the hits file for a solution file
+
+      @param solutionFile The solution text file
+      @return File The hits file, which may or may not exist
+   */
+   public static File getHitsFile( File solutionFile ) {
+      File folder = new File( solutionFile.getAbsoluteFile().getParentFile(), ProblemIndex.SIDECAR_FOLDER_NAME );
+      return new File( folder, solutionFile.getName() + HITS_EXTENSION );
+   }
+}
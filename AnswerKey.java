@@ -0,0 +1,839 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+   AnswerKey.java
+
+   A compiled solution file. Each line of a solution file is parsed once into its alternate
+   solutions and their tags (partial credit, range, and feedback), so that grading a student
+   answer does not have to split and parse the solution line again.
+
+   The compiled key is stored in the same compact binary layout whether it was just compiled
+   (a heap buffer) or loaded from a snapshot file (a memory-mapped buffer). Snapshots are saved
+   in the .grader folder next to the solution file as "Solutions_NAME.txt.key", and are only used
+   while the solution file matches the length, modified time and checksum stored in the snapshot.
+   Loading a snapshot skips parsing entirely, and several grading processes that map the same
+   snapshot share the same pages in memory.
+
+   The checksum is only computed when the modified time differs, so that a load does not have to
+   read the solution file. If the checksum still matches, the new modified time is written to the
+   snapshot, so that later loads skip the checksum again. An edit that keeps both the length and the
+   modified time of the file (within the time resolution of the file system, or after the time is
+   set back) is therefore not noticed. Deleting the snapshot makes the next run compile the file
+
+   Alternates that can never decide a grade are left out of the compiled key: duplicates of an
+   earlier alternate, values and ranges that an earlier alternate on the line already accepts,
+   and empty ranges on a line that has another alternate. Since the first alternate that accepts an
+   answer is the one that grades it, leaving them out does not change any grade. An empty range
+   that is the only alternate on its line is kept, so that the problem is still graded (as wrong)
+   instead of being treated as a problem without a solution. findRedundantAlternates(...) lists
+   them all
+
+   Snapshot layout (big-endian):
+
+      Header      MAGIC, VERSION, source length, source modified time, source checksum,
+                  problem count, alternate count, string count, string bytes
+      Problems    PROBLEM_BYTES per problem: id, first solution, first alternate, alternate count, flags
+      Alternates  ALTERNATE_BYTES per alternate: flags, value, feedback, list key, value hash,
+                  numeric value, min range, max range, partial credit
+      Strings     (string count + 1) offsets, followed by the UTF-8 bytes of every string
+
+   Strings are referred to by their number in the string table, or -1 for no string
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see Grader
+   @see ProblemIndex
+*/
+public final class AnswerKey {
+
+   public static final String SNAPSHOT_EXTENSION = ".key";
+
+   private static final int KEY_MAGIC   = 0x474B4559; //"GKEY"
+   private static final int KEY_VERSION = 4;
+
+   private static final int HEADER_BYTES    = 48;
+   private static final int PROBLEM_BYTES   = 20;
+   private static final int ALTERNATE_BYTES = 52;
+
+   /*Alternate flags*/
+   public static final int NUMERIC  = 1; //The solution value is a number, so answers are checked against the range
+   public static final int NO_SPECS = 2; //The alternate has no tags, so it is only matched exactly
+
+   /*Problem flags*/
+   public static final int MALFORMED = 1; //A range tag on this line could not be read
+
+   private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+   private final ByteBuffer buffer;
+   private final int problemCount;
+   private final int alternateCount;
+   private final int stringCount;
+   private final int problemsStart;
+   private final int alternatesStart;
+   private final int offsetsStart;
+   private final int stringsStart;
+
+   private final String[] strings;
+   private volatile HashMap<String, Integer> positions;
+   private volatile AlternateOrder alternateOrder;
+
+   /**
+      Read the header of a compiled key. The buffer is not copied
+
+      @param buffer The buffer holding the compiled key, in the snapshot layout
+   */
+   private AnswerKey( ByteBuffer buffer ) {
+      this.buffer = buffer;
+      problemCount    = buffer.getInt( 32 );
+      alternateCount  = buffer.getInt( 36 );
+      stringCount     = buffer.getInt( 40 );
+      problemsStart   = HEADER_BYTES;
+      alternatesStart = problemsStart + problemCount * PROBLEM_BYTES;
+      offsetsStart    = alternatesStart + alternateCount * ALTERNATE_BYTES;
+      stringsStart    = offsetsStart + (stringCount + 1) * 4;
+      strings = new String[ stringCount ];
+   }
+
+   /**
+      Get the compiled key for a solution file. The snapshot is used if it is still
+      consistent with the solution file. Otherwise the file is compiled and a new snapshot
+      is saved
+
+      @param solutionFile The solution text file
+      @return AnswerKey The compiled key
+      @throws IOException If the solution file cannot be read
+   */
+   public static AnswerKey forSolutionFile( File solutionFile ) throws IOException {
+      GradingEvents.KeyCompiled event = new GradingEvents.KeyCompiled();
+      event.begin();
+
+      AnswerKey key = loadSnapshot( solutionFile );
+      boolean fromSnapshot = key != null;
+      if( !fromSnapshot ) {
+         key = compile( solutionFile );
+         key.saveSnapshot( solutionFile );
+      }
+      key.alternateOrder = AlternateOrder.load( key, solutionFile );
+
+      event.end();
+      if( event.shouldCommit() ) {
+         event.solutionFile = solutionFile.getName();
+         event.problems = key.problemCount();
+         event.alternates = key.alternateCount();
+         event.bytes = key.sizeInBytes();
+         event.fromSnapshot = fromSnapshot;
+         event.commit();
+      }
+
+      return key;
+   }
+
+   /**
+      Compile a solution file
+
+      @param solutionFile The solution text file
+      @return AnswerKey The compiled key, held in memory
+      @throws IOException If the solution file cannot be read
+   */
+   public static AnswerKey compile( File solutionFile ) throws IOException {
+      byte[] bytes = Files.readAllBytes( solutionFile.toPath() );
+      CRC32 crc = new CRC32();
+      crc.update( bytes, 0, bytes.length );
+
+      String text = new String( bytes, Charset.defaultCharset() );
+      List<String> lines = text.isEmpty() ? new ArrayList<String>() : Arrays.asList( text.split("\\r?\\n|\\r") );
+
+      return compile( lines, bytes.length, solutionFile.lastModified(), crc.getValue(), null );
+   }
+
+   /**
+      Compile the lines of a solution file
+
+      @param lines The lines of the solution file, each beginning with the problem number
+      @return AnswerKey The compiled key, held in memory
+   */
+   public static AnswerKey compile( List<String> lines ) {
+      return compile( lines, 0, 0, 0, null );
+   }
+
+   /**
+      List the alternate solutions that are left out of the compiled key because they can never
+      decide a grade, eg. "16a. alternate 3 "(4,5)": duplicate of alternate 1"
+
+      @param lines The lines of the solution file
+      @return List<String> One line for each alternate that is left out
+   */
+   public static List<String> findRedundantAlternates( List<String> lines ) {
+      ArrayList<String> report = new ArrayList<String>();
+      compile( lines, 0, 0, 0, report );
+      return report;
+   }
+
+   /**
+      Compile the lines of a solution file, recording where they came from
+
+      Each line follows the format
+
+         Problem#. Solution Value ; Range NUMBER ; Range NUMBER to NUMBER ; PARTIAL CREDIT RATIO ; FEEDBACK
+
+      with alternate solutions separated by &'s
+
+      @param lines The lines of the solution file
+      @param sourceLength The length of the solution file in bytes
+      @param sourceModified The last modified time of the solution file
+      @param sourceChecksum The CRC32 checksum of the solution file
+      @param report The list to add a line to for each alternate that is left out, or null
+      @return AnswerKey The compiled key, held in memory
+   */
+   private static AnswerKey compile( List<String> lines, long sourceLength, long sourceModified, long sourceChecksum,
+                                     List<String> report ) {
+      KeyBuilder builder = new KeyBuilder();
+
+      for( String line : lines ) {
+         String id = line.split("\\.")[0];
+         String solutionLine = line.substring( line.indexOf(".") + 1 ).trim().toLowerCase();
+
+         int firstAlternate = builder.alternates.size();
+         int problemFlags = 0;
+         String firstSolution = null;
+
+         String[] solutionParts = solutionLine.isEmpty() ? new String[0] : solutionLine.split("&");
+         ArrayList<Alternate> lineAlternates = new ArrayList<Alternate>( solutionParts.length );
+         for( String part : solutionParts ) {
+            String[] rawSpecs = part.split(";");
+            String[] solutionSpecs = part.trim().split(";");
+
+            //The first solution without a partial credit tag is shown as the answer in feedback
+            if( firstSolution == null ) {
+               boolean hasCreditTag = false;
+               for( int rep = 1; rep < rawSpecs.length; rep++ )
+                  hasCreditTag |= isNumeric( rawSpecs[rep].trim() );
+               if( !hasCreditTag ) firstSolution = rawSpecs[0].trim();
+            }
+
+            Alternate alt = new Alternate();
+            alt.value = solutionSpecs[0].trim();
+            if( solutionSpecs.length == 1 ) alt.flags |= NO_SPECS;
+
+            try {
+               alt.numericValue = Double.parseDouble( alt.value );
+               alt.flags |= NUMERIC;
+            } catch( NumberFormatException e ) {
+               //Text value
+            }
+
+            //Run through each spec and set settings
+            for( int j = 0; j < solutionSpecs.length; j++ ) {
+               String spec = solutionSpecs[j].trim();
+
+               //Check for range tag and set range
+               if( spec.contains("range") ) {
+                  String[] rangeSpecs = WHITESPACE.split( spec );
+                  try {
+                     if( spec.contains("to") ) {
+                        alt.minRange = Double.parseDouble( rangeSpecs[1] );
+                        alt.maxRange = Double.parseDouble( rangeSpecs[3] );
+                     } else {
+                        alt.maxRange = Double.parseDouble( rangeSpecs[1] );
+                     }
+                  } catch( RuntimeException e ) {
+                     problemFlags |= MALFORMED;
+                  }
+                  continue;
+               }
+
+               //Check for solution value and partial credit ratio
+               if( j == 0 ) continue;
+               if( isNumeric( spec ) ) {
+                  double tag = Double.parseDouble( spec );
+                  if( tag < 1.0 && tag > -1.0 ) alt.credit = tag;
+                  else                          alt.value = spec;
+                  continue;
+               }
+
+               //Automated response
+               alt.feedback = spec;
+            }
+
+            //Lists of values can be matched in any order when the 'listOrderMatters' setting is off
+            if( (alt.flags & NUMERIC) == 0 && alt.value.contains(",") )
+               alt.listKey = toListKey( alt.value );
+
+            lineAlternates.add( alt );
+         }
+
+         //Empty ranges are only left out if another alternate on the line is kept
+         boolean acceptsAnswers = false;
+         for( Alternate alt : lineAlternates )
+            if( !alt.isEmptyRange() ) acceptsAnswers = true;
+
+         //Leave out the alternates that an earlier alternate on the line always wins over
+         ArrayList<Alternate> kept = new ArrayList<Alternate>( lineAlternates.size() );
+         for( int i = 0; i < lineAlternates.size(); i++ ) {
+            Alternate alt = lineAlternates.get(i);
+            String reason = (problemFlags & MALFORMED) != 0 ? null : findRedundancy( alt, kept, acceptsAnswers );
+            if( reason == null ) {
+               alt.position = i + 1;
+               kept.add( alt );
+               builder.alternates.add( alt );
+               if( report != null && alt.isEmptyRange() )
+                  report.add( id + ". alternate " + (i + 1) + " \"" + alt.value + "\": its range is empty, so every answer is wrong" );
+            } else if( report != null ) {
+               boolean unused = alt.credit != 1.0 || alt.feedback != null;
+               report.add( id + ". alternate " + (i + 1) + " \"" + alt.value + "\": " + reason +
+                           (unused ? ", so its partial credit and feedback are never given" : "") );
+            }
+         }
+
+         builder.addProblem( id, firstSolution == null ? "" : firstSolution, firstAlternate,
+                             builder.alternates.size() - firstAlternate, problemFlags );
+      }
+
+      return new AnswerKey( builder.toBuffer( sourceLength, sourceModified, sourceChecksum ) );
+   }
+
+   /**
+      Load the snapshot of a solution file by memory-mapping it
+
+      @param solutionFile The solution text file
+      @return AnswerKey The compiled key, or null if there is no snapshot, or if the snapshot
+                        is from a different version or no longer matches the solution file
+      @throws IOException If the solution file cannot be read
+   */
+   public static AnswerKey loadSnapshot( File solutionFile ) throws IOException {
+      File snapshot = getSnapshotFile( solutionFile );
+      if( !snapshot.exists() || snapshot.length() < HEADER_BYTES ) return null;
+
+      MappedByteBuffer buffer;
+      FileChannel channel = FileChannel.open( snapshot.toPath(), StandardOpenOption.READ );
+      try {
+         buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+      } finally {
+         channel.close(); //The mapping stays valid after the channel is closed
+      }
+
+      if( buffer.getInt(0) != KEY_MAGIC || buffer.getInt(4) != KEY_VERSION ) return null;
+
+      long length   = buffer.getLong(8);
+      long modified = buffer.getLong(16);
+      long checksum = buffer.getLong(24);
+      if( length != solutionFile.length() ) return null;
+
+      //The file was touched or copied. If it has not changed, the snapshot is kept with the new time
+      long solutionModified = solutionFile.lastModified();
+      if( modified != solutionModified ) {
+         if( checksum != ProblemIndex.checksumOf( solutionFile ) ) return null;
+         updateModifiedTime( snapshot, solutionModified );
+      }
+
+      return new AnswerKey( buffer );
+   }
+
+   /**
+      Write a new source modified time into the header of a snapshot. Only the 8 bytes of the time are
+      written, in place. A process that reads the header while it is written sees a time that does not
+      match, and checks the checksum instead. Failures are not fatal, since the checksum is checked
+      again on the next load
+
+      @param snapshot The snapshot file
+      @param sourceModified The modified time of the solution file
+   */
+   private static void updateModifiedTime( File snapshot, long sourceModified ) {
+      ByteBuffer time = ByteBuffer.allocate( 8 ).putLong( 0, sourceModified );
+      try( FileChannel channel = FileChannel.open( snapshot.toPath(), StandardOpenOption.WRITE ) ) {
+         while( time.hasRemaining() )
+            channel.write( time, 16 + time.position() );
+      } catch( IOException e ) {
+         //The snapshot is still valid. The checksum is computed again next time
+      }
+   }
+
+   /**
+      Save this key as the snapshot of a solution file. The snapshot is written to a temporary
+      file of its own and then moved into place, so that processes that have the old snapshot
+      mapped are not affected, and two processes saving at once do not write to the same file.
+      Failures are not fatal, since the key can always be compiled again
+
+      @param solutionFile The solution text file that this key was compiled from
+   */
+   public void saveSnapshot( File solutionFile ) {
+      File snapshot = getSnapshotFile( solutionFile );
+      snapshot.getParentFile().mkdirs();
+      Path temp = null;
+
+      try {
+         temp = Files.createTempFile( snapshot.getParentFile().toPath(), snapshot.getName(), ".tmp" );
+         ByteBuffer bytes = buffer.duplicate();
+         bytes.clear();
+         FileChannel channel = FileChannel.open( temp, StandardOpenOption.WRITE );
+         try {
+            while( bytes.hasRemaining() )
+               channel.write( bytes );
+         } finally {
+            channel.close();
+         }
+
+         try {
+            Files.move( temp, snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE );
+         } catch( AtomicMoveNotSupportedException e ) {
+            Files.move( temp, snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING );
+         }
+      } catch( IOException e ) {
+         if( temp != null ) temp.toFile().delete();
+      }
+   }
+
+   /**
+      Get the snapshot file for a solution file
+
+      @param solutionFile The solution text file
+      @return File The snapshot file, which may or may not exist
+   */
+   public static File getSnapshotFile( File solutionFile ) {
+      File folder = new File( solutionFile.getAbsoluteFile().getParentFile(), ProblemIndex.SIDECAR_FOLDER_NAME );
+      return new File( folder, solutionFile.getName() + SNAPSHOT_EXTENSION );
+   }
+
+   /**
+      Find the first alternate solution of a problem that accepts the student's answer.
+      Alternates are checked in the order that they appear in the solution file. See
+      AlternateOrder for the same search in the order of the most common answers
+
+      @param problem The position of the problem in the key
+      @param response The student's answer
+      @param listOrderMatters False if lists of values may be given in any order
+      @return int The alternate that accepts the answer, or -1 if none do
+   */
+   public int findMatch( int problem, Response response, boolean listOrderMatters ) {
+      int start = firstAlternate( problem );
+      int end = start + alternateCount( problem );
+      for( int alt = start; alt < end; alt++ )
+         if( matches( alt, response, listOrderMatters ) )
+            return alt;
+
+      return -1;
+   }
+
+   /**
+      Check whether an alternate solution accepts the student's answer
+
+      @param alt The alternate solution
+      @param response The student's answer
+      @param listOrderMatters False if lists of values may be given in any order
+      @return boolean True if the answer is accepted, for full or partial credit
+   */
+   public boolean matches( int alt, Response response, boolean listOrderMatters ) {
+      int flags = flags( alt );
+
+      //Exact match. The hash is compared before the text
+      if( (flags & NO_SPECS) != 0 && response.hash == valueHash( alt ) && response.text.equals( value( alt ) ) )
+         return true;
+
+      if( (flags & NUMERIC) != 0 ) {
+         if( !response.isNumeric ) return false;
+         double difference = Math.abs( response.numericValue - numericValue( alt ) );
+         return difference <= maxRange( alt ) && difference >= minRange( alt );
+      }
+
+      if( response.hash == valueHash( alt ) && response.text.equals( value( alt ) ) )
+         return true;
+
+      //Lists that are equal, but possibly rearranged differently
+      return !listOrderMatters && response.listKey != null && response.listKey.equals( listKey( alt ) );
+   }
+
+   /**
+      Get the order in which the alternates of each problem are checked while grading. Keys for
+      solution files load the hits saved by earlier runs; other keys start with no hits
+
+      @return AlternateOrder The order of the alternates
+   */
+   public AlternateOrder alternateOrder() {
+      AlternateOrder order = alternateOrder;
+      if( order == null ) {
+         synchronized( this ) {
+            if( alternateOrder == null ) alternateOrder = new AlternateOrder( this );
+            order = alternateOrder;
+         }
+      }
+
+      return order;
+   }
+
+   public int problemCount() {
+      return problemCount;
+   }
+
+   public int alternateCount() {
+      return alternateCount;
+   }
+
+   /**
+      Find a problem by its problem number
+
+      @param problemId The problem number, without the period
+      @return int The position of the problem in the key, or -1 if there is no such problem
+   */
+   public int indexOf( String problemId ) {
+      HashMap<String, Integer> map = positions;
+      if( map == null ) {
+         map = new HashMap<String, Integer>( problemCount * 2 );
+         for( int p = problemCount - 1; p >= 0; p-- )
+            map.put( problemId( p ), p );
+         positions = map;
+      }
+
+      Integer position = map.get( problemId );
+      return position == null ? -1 : position;
+   }
+
+   public String problemId( int problem ) {
+      return string( buffer.getInt( problemsStart + problem * PROBLEM_BYTES ) );
+   }
+
+   public String firstSolution( int problem ) {
+      return string( buffer.getInt( problemsStart + problem * PROBLEM_BYTES + 4 ) );
+   }
+
+   public int firstAlternate( int problem ) {
+      return buffer.getInt( problemsStart + problem * PROBLEM_BYTES + 8 );
+   }
+
+   public int alternateCount( int problem ) {
+      return buffer.getInt( problemsStart + problem * PROBLEM_BYTES + 12 );
+   }
+
+   public boolean isMalformed( int problem ) {
+      return (buffer.getInt( problemsStart + problem * PROBLEM_BYTES + 16 ) & MALFORMED) != 0;
+   }
+
+   public int flags( int alt ) {
+      return buffer.getInt( alternatesStart + alt * ALTERNATE_BYTES );
+   }
+
+   public String value( int alt ) {
+      return string( buffer.getInt( alternatesStart + alt * ALTERNATE_BYTES + 4 ) );
+   }
+
+   public String feedback( int alt ) {
+      String feedback = string( buffer.getInt( alternatesStart + alt * ALTERNATE_BYTES + 8 ) );
+      return feedback == null ? "" : feedback;
+   }
+
+   public String listKey( int alt ) {
+      return string( buffer.getInt( alternatesStart + alt * ALTERNATE_BYTES + 12 ) );
+   }
+
+   public int valueHash( int alt ) {
+      return buffer.getInt( alternatesStart + alt * ALTERNATE_BYTES + 16 );
+   }
+
+   public double numericValue( int alt ) {
+      return buffer.getDouble( alternatesStart + alt * ALTERNATE_BYTES + 20 );
+   }
+
+   public double minRange( int alt ) {
+      return buffer.getDouble( alternatesStart + alt * ALTERNATE_BYTES + 28 );
+   }
+
+   public double maxRange( int alt ) {
+      return buffer.getDouble( alternatesStart + alt * ALTERNATE_BYTES + 36 );
+   }
+
+   public double credit( int alt ) {
+      return buffer.getDouble( alternatesStart + alt * ALTERNATE_BYTES + 44 );
+   }
+
+   /**
+      Get the checksum of the solution file that this key was compiled from
+
+      @return long The CRC32 checksum, or 0 if the key was not compiled from a file
+   */
+   public long sourceChecksum() {
+      return buffer.getLong( 24 );
+   }
+
+   /**
+      Get the size of this key in bytes
+
+      @return int The size of the compiled key
+   */
+   public int sizeInBytes() {
+      return buffer.capacity();
+   }
+
+   /**
+      Get a String from the string table. Strings are decoded the first time they are used
+
+      @param number The number of the String in the table
+      @return String The String, or null for -1
+   */
+   private String string( int number ) {
+      if( number < 0 ) return null;
+
+      String str = strings[ number ];
+      if( str == null ) {
+         int start = buffer.getInt( offsetsStart + number * 4 );
+         int end = buffer.getInt( offsetsStart + number * 4 + 4 );
+         byte[] bytes = new byte[ end - start ];
+         ByteBuffer view = buffer.duplicate();
+         view.position( stringsStart + start );
+         view.get( bytes );
+         str = new String( bytes, StandardCharsets.UTF_8 );
+         strings[ number ] = str;
+      }
+
+      return str;
+   }
+
+   /**
+      Sort the values of a comma separated list, so that lists with the same values in a
+      different order have the same key
+
+      @param list The comma separated list
+      @return String The sorted values, separated by commas
+   */
+   public static String toListKey( String list ) {
+      String[] values = WHITESPACE.matcher( list ).replaceAll("").split(",");
+      if( values.length == 0 ) return null;
+
+      Arrays.sort( values );
+      return String.join( ",", values );
+   }
+
+   /**
+      Determines if a String is a number or not
+
+      @param str The String to check
+      @return boolean True if it is a number (an integer or a decimal), false otherwise
+   */
+   private static boolean isNumeric( String str ) {
+      return str != null && str.matches("-?\\d+(\\.\\d+)?");
+   }
+
+   /**
+      A student's answer to one problem, prepared once so that it can be checked against
+      every alternate solution without more parsing
+   */
+   public static final class Response {
+
+      public final String  text;
+      public final int     hash;
+      public final boolean isNumeric;
+      public final double  numericValue;
+      public final String  listKey;
+
+      /**
+         @param text The student's answer, after it has been formatted for grading
+      */
+      public Response( String text ) {
+         this.text = text;
+         this.hash = text.hashCode();
+
+         double value = 0.0;
+         boolean numeric = true;
+         try {
+            value = Double.parseDouble( text );
+         } catch( NumberFormatException e ) {
+            numeric = false;
+         }
+         this.isNumeric = numeric;
+         this.numericValue = value;
+         this.listKey = text.contains(",") ? toListKey( text ) : null;
+      }
+   }
+
+   /**
+      Check whether an alternate can never decide a grade, because every answer that it accepts is
+      accepted by an earlier alternate on the same line. Its exact value, its range, and the lists
+      that match it in another order are each checked against the earlier alternates
+
+      @param alt The alternate to check
+      @param earlier The alternates before it on the line that are kept
+      @param acceptsAnswers True if the line has an alternate that is not an empty range, so that
+                            empty ranges can be left out without leaving the line with none
+      @return String Why the alternate is left out, or null if it is needed
+   */
+   private static String findRedundancy( Alternate alt, List<Alternate> earlier, boolean acceptsAnswers ) {
+      boolean numeric = (alt.flags & NUMERIC) != 0;
+      if( acceptsAnswers && alt.isEmptyRange() )
+         return "its range is empty, so it accepts no answers";
+
+      for( Alternate other : earlier )
+         if( other.flags == alt.flags && other.value.equals( alt.value ) && Double.compare( other.numericValue, alt.numericValue ) == 0
+             && other.minRange == alt.minRange && other.maxRange == alt.maxRange )
+            return "duplicate of alternate " + other.position;
+
+      //Its value, as an answer. A numeric alternate with tags only accepts numbers within its range
+      Alternate valueCover = null;
+      if( !numeric || (alt.flags & NO_SPECS) != 0 ) {
+         Response value = new Response( alt.value );
+         for( Alternate other : earlier )
+            if( other.accepts( value, true ) ) { valueCover = other; break; }
+         if( valueCover == null ) return null;
+      }
+
+      //Numbers within its range
+      Alternate rangeCover = null;
+      if( numeric ) {
+         for( Alternate other : earlier )
+            if( other.containsRange( alt ) ) { rangeCover = other; break; }
+         if( rangeCover == null ) return null;
+      }
+
+      //Lists with the same values in another order
+      Alternate listCover = null;
+      if( alt.listKey != null ) {
+         for( Alternate other : earlier )
+            if( alt.listKey.equals( other.listKey ) ) { listCover = other; break; }
+         if( listCover == null ) return null;
+      }
+
+      String covers = "";
+      for( Alternate other : earlier )
+         if( other == valueCover || other == rangeCover || other == listCover )
+            covers += (covers.isEmpty() ? "" : " and ") + other.position;
+
+      return "every answer it accepts is accepted first by alternate " + covers;
+   }
+
+   /**
+      An alternate solution while it is being compiled
+   */
+   private static final class Alternate {
+      int    flags        = 0;
+      String value        = "";
+      String feedback     = null;
+      String listKey      = null;
+      double numericValue = 0.0;
+      double minRange     = 0.0;
+      double maxRange     = 0.0;
+      double credit       = 1.0;
+      int    position     = 0; //Its place on the solution line, from 1
+
+      /**
+         @return boolean True if it is a numeric alternate whose range holds no numbers
+      */
+      boolean isEmptyRange() {
+         return (flags & NUMERIC) != 0 && (flags & NO_SPECS) == 0 && !(minRange <= maxRange);
+      }
+
+      /**
+         The same checks as matches(...), for an alternate that is not compiled yet
+      */
+      boolean accepts( Response response, boolean listOrderMatters ) {
+         if( (flags & NO_SPECS) != 0 && response.text.equals( value ) ) return true;
+         if( (flags & NUMERIC) != 0 ) {
+            if( !response.isNumeric ) return false;
+            double difference = Math.abs( response.numericValue - numericValue );
+            return difference <= maxRange && difference >= minRange;
+         }
+         if( response.text.equals( value ) ) return true;
+
+         return !listOrderMatters && response.listKey != null && response.listKey.equals( listKey );
+      }
+
+      /**
+         Check whether this alternate accepts every number that another numeric alternate
+         accepts. Ranges with different centers must fit with a small margin, so that rounding
+         at their edges cannot let a number through one and not the other
+      */
+      boolean containsRange( Alternate other ) {
+         if( (flags & NUMERIC) == 0 ) return false;
+         if( numericValue == other.numericValue ) return minRange <= other.minRange && maxRange >= other.maxRange;
+         if( minRange > 0.0 ) return false;
+
+         double margin = 1e-9 * (1.0 + Math.abs( numericValue ) + Math.abs( other.numericValue ) + maxRange + other.maxRange);
+         return other.numericValue - other.maxRange >= numericValue - maxRange + margin &&
+                other.numericValue + other.maxRange <= numericValue + maxRange - margin;
+      }
+   }
+
+   /**
+      Collects the problems, alternates, and strings of a key and lays them out in a buffer
+   */
+   private static final class KeyBuilder {
+      final ArrayList<Alternate> alternates = new ArrayList<Alternate>();
+      final ArrayList<int[]> problems = new ArrayList<int[]>();
+      final ArrayList<byte[]> strings = new ArrayList<byte[]>();
+      final HashMap<String, Integer> stringNumbers = new HashMap<String, Integer>();
+      int stringBytes = 0;
+
+      void addProblem( String id, String firstSolution, int firstAlternate, int alternateCount, int flags ) {
+         problems.add( new int[]{ intern( id ), intern( firstSolution ), firstAlternate, alternateCount, flags } );
+      }
+
+      int intern( String str ) {
+         if( str == null ) return -1;
+
+         Integer number = stringNumbers.get( str );
+         if( number == null ) {
+            byte[] bytes = str.getBytes( StandardCharsets.UTF_8 );
+            number = strings.size();
+            strings.add( bytes );
+            stringNumbers.put( str, number );
+            stringBytes += bytes.length;
+         }
+
+         return number;
+      }
+
+      ByteBuffer toBuffer( long sourceLength, long sourceModified, long sourceChecksum ) {
+         //Intern alternate strings before sizing the buffer
+         int[][] altStrings = new int[ alternates.size() ][];
+         for( int i = 0; i < altStrings.length; i++ ) {
+            Alternate alt = alternates.get(i);
+            altStrings[i] = new int[]{ intern( alt.value ), intern( alt.feedback ), intern( alt.listKey ) };
+         }
+
+         int size = HEADER_BYTES + problems.size() * PROBLEM_BYTES + alternates.size() * ALTERNATE_BYTES
+                    + (strings.size() + 1) * 4 + stringBytes;
+         ByteBuffer buffer = ByteBuffer.allocate( size );
+
+         buffer.putInt( KEY_MAGIC ).putInt( KEY_VERSION );
+         buffer.putLong( sourceLength ).putLong( sourceModified ).putLong( sourceChecksum );
+         buffer.putInt( problems.size() ).putInt( alternates.size() ).putInt( strings.size() ).putInt( stringBytes );
+
+         for( int[] problem : problems )
+            for( int field : problem )
+               buffer.putInt( field );
+
+         for( int i = 0; i < altStrings.length; i++ ) {
+            Alternate alt = alternates.get(i);
+            buffer.putInt( alt.flags ).putInt( altStrings[i][0] ).putInt( altStrings[i][1] ).putInt( altStrings[i][2] );
+            buffer.putInt( alt.value.hashCode() );
+            buffer.putDouble( alt.numericValue ).putDouble( alt.minRange ).putDouble( alt.maxRange ).putDouble( alt.credit );
+         }
+
+         int offset = 0;
+         for( byte[] str : strings ) {
+            buffer.putInt( offset );
+            offset += str.length;
+         }
+         buffer.putInt( offset );
+         for( byte[] str : strings )
+            buffer.put( str );
+
+         buffer.flip();
+         return buffer.asReadOnlyBuffer();
+      }
+   }
+}
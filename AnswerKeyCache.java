@@ -0,0 +1,216 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+   AnswerKeyCache.java
+
+   A cache of compiled answer keys for a long-running grader, by assignment name. The cache
+   is bounded by the total size of the keys it holds, and evicts the least recently used key
+   when it is full.
+
+   Every lookup checks that the solution file has not changed since the key was compiled.
+   The last modified time and length are checked first, and the checksum is only recomputed
+   if one of those has changed. A changed file is compiled again outside of the lock, and the
+   new key replaces the old entry in one step. Keys are never changed once they are built, so
+   grading that is already using the old key finishes with the old key, while grading that
+   starts after the swap uses the new one
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see AnswerKey
+*/
+public class AnswerKeyCache {
+
+   public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+   private final long maxBytes;
+   private long totalBytes = 0;
+   private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true );
+
+   private long hits = 0, misses = 0, reloads = 0, evictions = 0;
+
+   /**
+      @param maxBytes The most bytes of compiled keys to keep. The most recently used key is
+                      always kept, even if it is larger than this
+   */
+   public AnswerKeyCache( long maxBytes ) {
+      this.maxBytes = maxBytes;
+   }
+
+   /**
+      Get the compiled key for a solution file, using the assignment name in the file name
+
+      @param solutionFile The solution text file, eg. Solutions_HW1.txt
+      @return AnswerKey The compiled key
+      @throws IOException If the solution file cannot be read
+   */
+   public AnswerKey get( File solutionFile ) throws IOException {
+      return get( getAssignmentName( solutionFile.getName() ), solutionFile );
+   }
+
+   /**
+      Get the compiled key for an assignment, compiling it or loading its snapshot if it is not
+      cached or if the solution file has changed
+
+      @param assignmentName The name of the assignment, eg. HW1
+      @param solutionFile The solution text file for the assignment
+      @return AnswerKey The compiled key
+      @throws IOException If the solution file cannot be read
+   */
+   public AnswerKey get( String assignmentName, File solutionFile ) throws IOException {
+      String name = assignmentName.toLowerCase();
+      File file = solutionFile.getAbsoluteFile();
+
+      Entry entry;
+      synchronized( this ) {
+         entry = entries.get( name );
+      }
+
+      if( entry != null && entry.file.equals( file ) ) {
+         long length = file.length();
+         long modified = file.lastModified();
+         if( entry.length == length && entry.modified == modified ) {
+            count( true, false );
+            return entry.key;
+         }
+
+         //Touched but not changed
+         if( entry.length == length && entry.key.sourceChecksum() == ProblemIndex.checksumOf( file ) ) {
+            Entry touched = new Entry( file, length, modified, entry.key );
+            swap( name, entry, touched );
+            count( true, false );
+            return entry.key;
+         }
+      }
+
+      //Compile outside of the lock, so that lookups of other assignments are not held up
+      long length = file.length();
+      long modified = file.lastModified();
+      AnswerKey key = AnswerKey.forSolutionFile( file );
+      swap( name, entry, new Entry( file, length, modified, key ) );
+      count( false, entry != null );
+
+      return key;
+   }
+
+   /**
+      Remove the key of an assignment from the cache
+
+      @param assignmentName The name of the assignment
+   */
+   public synchronized void invalidate( String assignmentName ) {
+      Entry removed = entries.remove( assignmentName.toLowerCase() );
+      if( removed != null ) totalBytes -= removed.key.sizeInBytes();
+   }
+
+   /**
+      Remove every key from the cache
+   */
+   public synchronized void clear() {
+      entries.clear();
+      totalBytes = 0;
+   }
+
+   /**
+      Get a summary of how well the cache is working
+
+      @return String The number of keys, their size, and the hits, misses, reloads and evictions
+   */
+   public synchronized String getStats() {
+      return "Keys: " + entries.size() + ", Bytes: " + totalBytes + " / " + maxBytes +
+             ", Hits: " + hits + ", Misses: " + misses + ", Reloads: " + reloads + ", Evictions: " + evictions;
+   }
+
+   public synchronized long getHits()   { return hits; }
+   public synchronized long getMisses() { return misses; }
+
+   /**
+      Put the new entry in place of the old one, unless another thread has already replaced
+      the old one with a newer entry. Then evict the least recently used keys until the cache
+      fits in its size limit
+
+      @param name The assignment name
+      @param expected The entry that was looked up, or null if there was none
+      @param replacement The new entry
+   */
+   private synchronized void swap( String name, Entry expected, Entry replacement ) {
+      Entry current = entries.get( name );
+      if( current != expected && current != null && current.modified > replacement.modified ) return;
+
+      Entry old = entries.put( name, replacement );
+      if( old != null ) totalBytes -= old.key.sizeInBytes();
+      totalBytes += replacement.key.sizeInBytes();
+
+      Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+      while( totalBytes > maxBytes && entries.size() > 1 && it.hasNext() ) {
+         Map.Entry<String, Entry> eldest = it.next();
+         if( eldest.getKey().equals( name ) ) continue;
+         totalBytes -= eldest.getValue().key.sizeInBytes();
+         it.remove();
+         evictions++;
+      }
+   }
+
+   private synchronized void count( boolean hit, boolean reload ) {
+      if( GradingMetrics.ENABLED ) GradingMetrics.recordKeyCache( hit );
+      if( hit ) hits++;
+      else      misses++;
+      if( reload ) reloads++;
+   }
+
+   /**
+      Get the assignment name from the name of a solution or student file. File names follow the
+      format NAME_ASSIGNMENT.txt, or Solutions_ASSIGNMENT.txt
+
+      @param fileName The name of the file, including the .txt extension
+      @return String The assignment name, or the file name without its extension if it does not
+                     follow this format
+   */
+   public static String getAssignmentName( String fileName ) {
+      String[] tokens = fileName.split("_|-");
+      String token = tokens.length < 2 ? fileName : tokens[1];
+      int dot = token.lastIndexOf(".");
+      return dot == -1 ? token : token.substring( 0, dot );
+   }
+
+   /**
+      Find the solution file for an assignment, eg. Solutions_HW1.txt for HW1
+
+      @param directory The folder to look in
+      @param assignment The name of the assignment (caps do not matter)
+      @return File The solution file, or null if there is none
+   */
+   public static File findSolutionFile( File directory, String assignment ) {
+      File[] files = directory.listFiles();
+      if( files == null ) return null;
+
+      for( File file : files ) {
+         String fileName = file.getName();
+         if( file.isFile() && fileName.endsWith(".txt") && fileName.toLowerCase().startsWith("solution") &&
+             getAssignmentName( fileName ).equalsIgnoreCase( assignment ) )
+            return file;
+      }
+
+      return null;
+   }
+
+   /**
+      A compiled key and the state of the solution file that it was compiled from
+   */
+   private static final class Entry {
+      final File file;
+      final long length;
+      final long modified;
+      final AnswerKey key;
+
+      Entry( File file, long length, long modified, AnswerKey key ) {
+         this.file = file;
+         this.length = length;
+         this.modified = modified;
+         this.key = key;
+      }
+   }
+}
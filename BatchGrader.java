@@ -0,0 +1,732 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+   BatchGrader.java
+
+   Grades every assignment in a folder, or in a ZIP archive, in one pass. The student files are
+   grouped by the assignment name in their file names (NAME_ASSIGNMENT.txt), each group is paired
+   with its Solutions_ASSIGNMENT.txt file, and every student file of every group is graded by one
+   shared pool of threads. The results of each group are listed in order, followed by a summary of
+   all of the assignments:
+
+      java Grader batch [THREADS] [RESULTS_FILE]
+      java Grader zip EXPORT.zip [RESULTS_FILE]
+
+   Student files are handed to the pool only a few at a time for each thread, ahead of the one
+   whose results are being listed, and results are let go once they are listed, so the memory used
+   does not grow with the size of the batch.
+
+   The results of each student are written to a _Grade.txt file next to their student file, or all
+   of them to one results file (.jsonl, .csv or .zip, see ResultsOutput), which saves creating a
+   file for every student in a large class. Results files and the console are written by a
+   ResultWriter, while the pool keeps grading, and results that could not be written are listed
+   after the summary.
+
+   A ZIP archive, such as an export from the LMS, is graded without extracting it: each entry is
+   read straight from the archive, and the results go to one results file (EXPORT_Grades.zip by
+   default). Solution files in the archive are used first, then the ones in the folder.
+
+   For thousands of students, printing every result slows the whole batch down to the speed of the
+   terminal. In quiet mode (java Grader batch --quiet [--log FILE]), one progress line is shown
+   instead, with the files and answers graded per second, the time left and the errors so far, and
+   the results of each student file go to a buffered log file, if one is given.
+
+   When the results go to a _Grade.txt file per student, each student file is added to a journal
+   (see BatchJournal) once its results file is written. If a batch is stopped part of the way
+   through, running it again skips the student files that the journal shows were finished, after
+   checking that their student, solution and results files have not changed, and gives the same
+   output and summary as a run that was never stopped. Use --fresh to grade every file again.
+
+   Student files without a solution file are listed in the summary and are not graded
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see Grader
+   @see GradingSession
+*/
+public class BatchGrader {
+
+   private static final String[] EXCLUDED_FILES = {"Temp","Settings","Solution","Grade"};
+   private static final String SEPARATOR = "\n------------------------------------\n";
+
+   /*In quiet mode, the progress line is shown again at most this often*/
+   private static final long PROGRESS_INTERVAL_MILLIS = 250;
+
+   /*No more than this many student files for each thread are handed to the pool ahead of the one being collected*/
+   private static final int IN_FLIGHT_PER_THREAD = 4;
+
+   private final File directory;
+   private final GraderSettings settings;
+   private final int threads;
+   private final ResultWriter writer;
+   private boolean quiet = false;
+   private PrintStream log = null;
+   private boolean resume = true;
+   private BatchJournal journal = null;
+
+   /**
+      @param directory The folder with the student files and the solution files
+      @param settings The grading options
+      @param threads The number of threads that grade student files
+      @param writer Writes the results files and prints the results of each student file as it is
+                    collected
+   */
+   public BatchGrader( File directory, GraderSettings settings, int threads, ResultWriter writer ) {
+      this.directory = directory;
+      this.settings = settings;
+      this.threads = Math.max( 1, threads );
+      this.writer = writer;
+   }
+
+   /**
+      Show one progress line instead of the results of each student file
+
+      @param log Where the results of each student file and any errors go instead, or null to leave
+                 them out. It is flushed, not closed, once grading is done
+   */
+   public void setQuiet( PrintStream log ) {
+      this.quiet = true;
+      this.log = log;
+   }
+
+   /**
+      @param resume False to grade every student file again, instead of skipping the ones that an
+                    earlier run finished
+   */
+   public void setResume( boolean resume ) {
+      this.resume = resume;
+   }
+
+   /**
+      A student file to grade, from a folder or from an entry of a ZIP archive
+   */
+   interface Source {
+
+      /**
+         @return String The name of the student file, without any folders, eg. Bob_HW1.txt
+      */
+      String getFileName();
+
+      /**
+         @return List<String> The lines of the student file
+         @throws IOException If the student file cannot be read
+      */
+      List<String> readLines() throws IOException;
+
+      /**
+         @return File The student file, if it is a file of its own that gets a results file next
+                      to it, or null
+      */
+      File getFile();
+
+      /**
+         Write the results file of the student file, when the results are not going to a ResultsOutput
+
+         @param writer The writer to hand the results file to
+         @param resultsText The results, from GradingSession.Result.toResultsText()
+      */
+      void writeResults( ResultWriter writer, String resultsText );
+   }
+
+   /**
+      Group the student files of a folder by assignment. A student file must be named
+      NAME_ASSIGNMENT.txt, the same as checkIfFilesAreCompatible(...) in Grader requires
+
+      @param directory The folder to look in
+      @return Map<String, List<File>> The student files of each assignment, by assignment name
+                                      (caps do not matter), in order of the assignment names
+   */
+   static Map<String, List<File>> groupByAssignment( File directory ) {
+      TreeMap<String, List<File>> groups = new TreeMap<String, List<File>>( String.CASE_INSENSITIVE_ORDER );
+      for( File file : Grader.getTextFiles( directory, EXCLUDED_FILES ) ) {
+         String assignment = getAssignment( file.getName() );
+         if( assignment != null )
+            groups.computeIfAbsent( assignment, name -> new ArrayList<File>() ).add( file );
+      }
+
+      return groups;
+   }
+
+   /**
+      Get the assignment of a student file
+
+      @param fileName The name of the student file, eg. Bob_HW1.txt
+      @return String The assignment name, eg. HW1, or null if the name is not NAME_ASSIGNMENT.txt
+   */
+   static String getAssignment( String fileName ) {
+      String[] tokens = fileName.split("_|-");
+      if( tokens.length < 2 || tokens[0].isEmpty() ) return null;
+
+      String assignment = AnswerKeyCache.getAssignmentName( fileName );
+      return assignment.isEmpty() ? null : assignment;
+   }
+
+   /**
+      Grade every assignment in the folder. Results files are written next to the student files,
+      if the grading options ask for them
+
+      @return String The summary
+   */
+   public String gradeAll() {
+      return gradeAll( null );
+   }
+
+   /**
+      Grade every assignment in the folder
+
+      @param output The results file for every student, or null to write a results file next to
+                    each student file, if the grading options ask for them. The output is closed
+      @return String The summary
+   */
+   public String gradeAll( ResultsOutput output ) {
+      boolean createResultsFiles = output == null && settings.createResultsFile;
+      ArrayList<Group> groups = new ArrayList<Group>();
+      for( Map.Entry<String, List<File>> entry : groupByAssignment( directory ).entrySet() ) {
+         Group group = new Group( entry.getKey() );
+         for( File studentFile : entry.getValue() )
+            group.sources.add( new FileSource( studentFile, createResultsFiles ) );
+         groups.add( group );
+      }
+
+      if( !createResultsFiles ) return grade( groups, new HashMap<String, List<String>>(), output );
+
+      //Results files can be checked later, so a checkpoint is kept of the ones that are written
+      try {
+         journal = BatchJournal.open( directory );
+      } catch( IOException e ) {
+         writer.print( "Could not open the batch journal, so this run cannot be resumed: " + e + "\n" );
+      }
+      try {
+         return grade( groups, new HashMap<String, List<String>>(), output );
+      } finally {
+         if( journal != null ) {
+            try {
+               journal.close();
+            } catch( IOException e ) {
+               e.printStackTrace();
+            }
+            journal = null;
+         }
+      }
+   }
+
+   /**
+      Grade every assignment in a ZIP archive, without extracting it
+
+      @param archive The ZIP archive with the student files, and possibly the solution files
+      @param output The results file for every student. It replaces the results of an earlier run
+                    once grading is done, and is closed
+      @return String The summary
+      @throws IOException If the archive cannot be read
+   */
+   public String gradeArchive( File archive, ResultsOutput output ) throws IOException {
+      try( ZipFile zip = new ZipFile( archive ) ) {
+         TreeMap<String, Group> groups = new TreeMap<String, Group>( String.CASE_INSENSITIVE_ORDER );
+         HashMap<String, List<String>> solutions = new HashMap<String, List<String>>();
+
+         Enumeration<? extends ZipEntry> entries = zip.entries();
+         while( entries.hasMoreElements() ) {
+            ZipEntry entry = entries.nextElement();
+            String fileName = getBaseName( entry );
+            if( entry.isDirectory() || !fileName.endsWith(".txt") ) continue;
+
+            ZipSource source = new ZipSource( zip, entry );
+            if( fileName.toLowerCase().startsWith("solution") ) {
+               solutions.put( AnswerKeyCache.getAssignmentName( fileName ).toLowerCase(), source.readLines() );
+               continue;
+            }
+
+            boolean excluded = false;
+            for( String token : EXCLUDED_FILES )
+               excluded |= fileName.contains( token );
+            String assignment = getAssignment( fileName );
+            if( excluded || assignment == null ) continue;
+
+            groups.computeIfAbsent( assignment, name -> new Group( name ) ).sources.add( source );
+         }
+
+         return grade( new ArrayList<Group>( groups.values() ), solutions, output );
+      } catch( IOException e ) {
+         output.abort();
+         throw e;
+      }
+   }
+
+   /**
+      Pair each group with its solution file, then grade every student file of every group with
+      the same pool of threads. The results of each student file are printed as they are collected
+
+      @param groups The student files of each assignment
+      @param solutions The lines of the solution files from an archive, by lowercase assignment name.
+                       Assignments that are not here use the solution file in the folder
+      @param output The results file for every student, or null. It is closed once every student
+                    file is graded
+      @return String Where the results were written, the summary, and the results that could not
+                     be written
+   */
+   private String grade( List<Group> groups, Map<String, List<String>> solutions, ResultsOutput output ) {
+      long start = System.nanoTime();
+
+      //Compile the keys before grading starts
+      for( Group group : groups ) {
+         List<String> solutionLines = solutions.get( group.name.toLowerCase() );
+         if( solutionLines != null ) {
+            group.solutionName = "Solutions_" + group.name + ".txt";
+            group.session = new GradingSession( settings, AnswerKey.compile( solutionLines ), true );
+            continue;
+         }
+
+         group.solutionFile = AnswerKeyCache.findSolutionFile( directory, group.name );
+         if( group.solutionFile != null ) {
+            group.solutionName = group.solutionFile.getName();
+            group.session = Grader.createSession( group.solutionFile, settings );
+            if( journal != null && group.session != null ) {
+               try {
+                  group.keyFingerprint = BatchJournal.fingerprint( group.solutionFile, settings );
+               } catch( IOException e ) {
+                  group.keyFingerprint = null; //Graded without a checkpoint
+               }
+            }
+         }
+      }
+
+      //Every student file of every assignment goes to the same pool, a few at a time
+      ExecutorService pool = Executors.newFixedThreadPool( threads );
+      try {
+         Submitter submitter = new Submitter( pool, groups, threads * IN_FLIGHT_PER_THREAD );
+         submitter.fill();
+
+         Progress progress = quiet ? new Progress( groups ) : null;
+         for( Group group : groups )
+            collect( group, output, progress, submitter );
+         if( progress != null ) writer.print( progress.getLine() + "\n" );
+
+         //The output is only closed once the writer has written every result to it
+         List<String> failures = writer.flush();
+         if( log != null ) {
+            log.flush();
+            if( log.checkError() ) failures.add( "the log file" );
+         }
+         StringBuilder text = new StringBuilder();
+         if( output != null ) {
+            try {
+               output.close();
+               text.append( "\nResults written to " ).append( output.getFile().getPath() ).append( "\n" );
+            } catch( IOException e ) {
+               output.abort();
+               text.append( "\nError! Could not write " ).append( output.getFile().getPath() ).append( ": " ).append( e ).append( "\n" );
+            }
+         }
+         int resumed = 0;
+         for( Group group : groups )
+            resumed += group.resumed;
+         if( resumed > 0 )
+            text.append( "\nResumed from the checkpoint: " ).append( resumed ).append( " student file(s) were finished by an earlier run\n" );
+         text.append( getSummary( groups, System.nanoTime() - start ) );
+         if( !failures.isEmpty() ) {
+            text.append( "\n" ).append( failures.size() ).append( " result(s) could not be written:\n" );
+            for( String failure : failures )
+               text.append( "Error! Could not write " ).append( failure ).append( "\n" );
+         }
+
+         return text.toString();
+      } catch( RuntimeException e ) {
+         if( output != null ) {
+            writer.flush();
+            output.abort();
+         }
+         throw e;
+      } finally {
+         pool.shutdown();
+      }
+   }
+
+   /**
+      Grade one student file and hand its results file to the writer. A student file that an
+      earlier run finished, according to the journal, is not graded again
+
+      @param group The assignment of the student file
+      @param source The student file
+      @return Graded The graded student file
+   */
+   private Graded grade( Group group, Source source ) throws IOException {
+      List<String> lines = source.readLines();
+      File studentFile = journal == null || group.keyFingerprint == null ? null : source.getFile();
+      String inputHash = null;
+      if( studentFile != null ) {
+         inputHash = BatchJournal.hash( lines );
+         BatchJournal.Entry entry = resume ? journal.resume( studentFile, group.keyFingerprint, inputHash ) : null;
+         if( entry != null ) return new Graded( entry );
+      }
+
+      GradingSession.Result result = Grader.gradeStudentLines( source.getFileName(), lines, group.session );
+      if( result.hasError() ) return new Graded( result, null );
+
+      String resultsText = result.toResultsText();
+      if( studentFile == null ) {
+         source.writeResults( writer, resultsText );
+      } else {
+         //The journal entry is only added once the results file is written
+         BatchJournal.Entry entry = new BatchJournal.Entry( studentFile.getName(), group.keyFingerprint, inputHash,
+                                                            BatchJournal.hash( resultsText ), result.totalPoints,
+                                                            result.maxPoints, result.verdicts.size() );
+         writer.run( studentFile.getName(), () -> {
+            Grader.saveResultsFile( studentFile, resultsText );
+            journal.append( entry );
+         } );
+      }
+
+      return new Graded( result, resultsText );
+   }
+
+   /**
+      Wait for the student files of an assignment to be graded, add up their scores, and hand
+      their results to the writer, in order
+
+      @param group The assignment
+      @param output The results file for every student, or null
+      @param progress The progress line in quiet mode, or null
+      @param submitter Hands the next student files to the pool as each one is collected
+   */
+   private void collect( Group group, ResultsOutput output, Progress progress, Submitter submitter ) {
+      if( group.session == null ) return;
+
+      for( int i = 0; i < group.sources.size(); i++ ) {
+         String studentFileName = group.sources.get(i).getFileName();
+         Graded graded;
+         try {
+            graded = group.results.get(i).get();
+         } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return;
+         } catch( ExecutionException e ) {
+            group.errors++;
+            printDetail( "Error! Could not grade " + studentFileName + ": " + e.getCause() + "\n", progress, -1 );
+            continue;
+         } finally {
+            //The results are not kept once they are collected
+            group.results.set( i, null );
+            submitter.collected();
+         }
+
+         GradingSession.Result result = graded.result;
+         String errorText = result == null ? null : Grader.getErrorText( result, studentFileName, group.solutionName );
+         if( errorText != null ) {
+            group.errors++;
+            printDetail( errorText, progress, -1 );
+            continue;
+         }
+
+         if( output != null ) writer.write( output, group.name, studentFileName, result );
+         if( result == null ) group.resumed++;
+         group.add( graded.totalPoints, graded.maxPoints );
+         printDetail( graded.resultsText + SEPARATOR, progress, graded.answers );
+      }
+
+      if( AlternateOrder.ENABLED && group.solutionFile != null )
+         group.session.getKey().alternateOrder().save( group.solutionFile );
+   }
+
+   /**
+      Print the results of a student file, or in quiet mode, log them and update the progress line
+
+      @param text The results, or why the student file could not be graded
+      @param progress The progress line in quiet mode, or null
+      @param answers The number of answers graded, or -1 if the student file could not be graded
+   */
+   private void printDetail( String text, Progress progress, int answers ) {
+      if( progress == null ) {
+         writer.print( text );
+         return;
+      }
+
+      if( log != null ) writer.print( log, text );
+      if( progress.add( answers ) ) writer.print( progress.getLine() );
+   }
+
+   /**
+      Get the summary of every assignment: the number of student files graded, the number that
+      could not be graded, and the mean, lowest and highest scores
+
+      @param groups The assignments
+      @param nanos How long grading took
+      @return String The summary
+   */
+   private String getSummary( List<Group> groups, long nanos ) {
+      int students = 0, errors = 0;
+      StringBuilder rows = new StringBuilder();
+      for( Group group : groups ) {
+         if( group.solutionName == null ) {
+            rows.append( String.format( "%-14s %8d   No solution file found%n", group.name, group.sources.size() ) );
+            continue;
+         }
+         if( group.session == null ) {
+            rows.append( String.format( "%-14s %8d   Could not read %s%n", group.name, group.sources.size(), group.solutionName ) );
+            continue;
+         }
+
+         students += group.graded;
+         errors += group.errors;
+         if( group.graded == 0 )
+            rows.append( String.format( "%-14s %8d %8d%n", group.name, group.graded, group.errors ) );
+         else
+            rows.append( String.format( "%-14s %8d %8d %7.1f%% %7.1f%% %7.1f%%%n", group.name, group.graded, group.errors,
+                                        group.totalPercent / group.graded, group.lowPercent, group.highPercent ) );
+      }
+
+      return String.format( "%nGraded %d student files of %d assignments in %.2f seconds, with %d threads (%d could not be graded)%n%n",
+                            students, groups.size(), nanos / 1e9, threads, errors ) +
+             String.format( "%-14s %8s %8s %8s %8s %8s%n", "Assignment", "Graded", "Errors", "Mean", "Low", "High" ) +
+             rows;
+   }
+
+   /**
+      The student files of one assignment, and their scores once they are graded
+   */
+   private static final class Group {
+      final String name;
+      final ArrayList<Source> sources = new ArrayList<Source>();
+      final ArrayList<Future<Graded>> results = new ArrayList<Future<Graded>>();
+      File solutionFile;
+      String solutionName;
+      GradingSession session;
+      String keyFingerprint;
+
+      int graded = 0, errors = 0, resumed = 0;
+      double totalPercent = 0.0, lowPercent = 100.0, highPercent = 0.0;
+
+      Group( String name ) {
+         this.name = name;
+      }
+
+      void add( double totalPoints, double maxPoints ) {
+         double percent = maxPoints == 0.0 ? 100.0 : 100.0 * totalPoints / maxPoints;
+         graded++;
+         totalPercent += percent;
+         lowPercent = Math.min( lowPercent, percent );
+         highPercent = Math.max( highPercent, percent );
+      }
+   }
+
+   /**
+      Hands the student files of every group to the pool in the order that they are collected, no
+      more than a set number ahead of the one being collected, so the results waiting to be
+      collected do not fill memory in a large batch. Only the collecting thread uses it
+   */
+   private final class Submitter {
+      private final ExecutorService pool;
+      private final List<Group> groups;
+      private final int inFlight;
+      private int group = 0, source = 0;
+      private long submitted = 0, collected = 0;
+
+      Submitter( ExecutorService pool, List<Group> groups, int inFlight ) {
+         this.pool = pool;
+         this.groups = groups;
+         this.inFlight = Math.max( 1, inFlight );
+      }
+
+      /**
+         Hand student files to the pool until inFlight of them are waiting to be collected
+      */
+      void fill() {
+         while( submitted - collected < inFlight && group < groups.size() ) {
+            Group next = groups.get( group );
+            if( next.session == null || source >= next.sources.size() ) {
+               group++;
+               source = 0;
+               continue;
+            }
+
+            Source studentFile = next.sources.get( source++ );
+            next.results.add( pool.submit( () -> grade( next, studentFile ) ) );
+            submitted++;
+         }
+      }
+
+      /**
+         Note that a student file was collected, and hand the next one to the pool
+      */
+      void collected() {
+         collected++;
+         fill();
+      }
+   }
+
+   /**
+      A student file that was graded in this run, or that an earlier run finished
+   */
+   private static final class Graded {
+      final GradingSession.Result result; //Null if an earlier run finished it
+      final String resultsText;
+      final double totalPoints, maxPoints;
+      final int answers;
+
+      Graded( GradingSession.Result result, String resultsText ) {
+         this.result = result;
+         this.resultsText = resultsText;
+         this.totalPoints = result.totalPoints;
+         this.maxPoints = result.maxPoints;
+         this.answers = result.verdicts.size();
+      }
+
+      Graded( BatchJournal.Entry entry ) {
+         this.result = null;
+         this.resultsText = entry.resultsText;
+         this.totalPoints = entry.totalPoints;
+         this.maxPoints = entry.maxPoints;
+         this.answers = entry.answers;
+      }
+   }
+
+   /**
+      The progress of a batch in quiet mode, shown on one line that is written over each time
+   */
+   private static final class Progress {
+      private final long start = System.nanoTime();
+      private final int total;
+      private int files = 0, errors = 0;
+      private long answers = 0;
+      private long lastShown = 0;
+
+      Progress( List<Group> groups ) {
+         int count = 0;
+         for( Group group : groups )
+            if( group.session != null ) count += group.sources.size();
+         this.total = count;
+      }
+
+      /**
+         Count one collected student file
+
+         @param answers The number of answers graded, or -1 if the student file could not be graded
+         @return boolean True if it is time to show the progress line again
+      */
+      boolean add( int answers ) {
+         files++;
+         if( answers < 0 ) errors++;
+         else              this.answers += answers;
+
+         long now = System.nanoTime();
+         if( now - lastShown < PROGRESS_INTERVAL_MILLIS * 1000000L ) return false;
+         lastShown = now;
+         return true;
+      }
+
+      /**
+         @return String eg. "\rGraded 1200/30000 files   850.2 files/s   42510 answers/s   ETA 0:33   0 errors"
+      */
+      String getLine() {
+         double seconds = Math.max( 1e-9, (System.nanoTime() - start) / 1e9 );
+         double filesPerSecond = files / seconds;
+         long left = filesPerSecond == 0.0 ? 0 : Math.round( (total - files) / filesPerSecond );
+         return String.format( "\rGraded %d/%d files %8.1f files/s %10.0f answers/s   ETA %d:%02d   %d errors ",
+                               files, total, filesPerSecond, answers / seconds, left / 60, left % 60, errors );
+      }
+   }
+
+   /**
+      A student file in a folder. Its results file is written next to it
+   */
+   private static final class FileSource implements Source {
+      private final File studentFile;
+      private final boolean createResultsFile;
+
+      FileSource( File studentFile, boolean createResultsFile ) {
+         this.studentFile = studentFile;
+         this.createResultsFile = createResultsFile;
+      }
+
+      public String getFileName() {
+         return studentFile.getName();
+      }
+
+      public List<String> readLines() throws IOException {
+         long start = GradingMetrics.ENABLED ? System.nanoTime() : 0;
+         List<String> lines = readAllLines( new BufferedReader( new InputStreamReader(
+                                 new FileInputStream( studentFile ), Charset.defaultCharset() ) ) );
+         if( GradingMetrics.ENABLED ) GradingMetrics.record( GradingMetrics.Phase.READ, start );
+         return lines;
+      }
+
+      public File getFile() {
+         return createResultsFile ? studentFile : null;
+      }
+
+      public void writeResults( ResultWriter writer, String resultsText ) {
+         if( createResultsFile ) writer.writeResultsFile( studentFile, resultsText );
+      }
+   }
+
+   /**
+      An entry of a ZIP archive. Its results always go to the ResultsOutput
+   */
+   private static final class ZipSource implements Source {
+      private final ZipFile zip;
+      private final ZipEntry entry;
+
+      ZipSource( ZipFile zip, ZipEntry entry ) {
+         this.zip = zip;
+         this.entry = entry;
+      }
+
+      public String getFileName() {
+         return getBaseName( entry );
+      }
+
+      public List<String> readLines() throws IOException {
+         long start = GradingMetrics.ENABLED ? System.nanoTime() : 0;
+         List<String> lines = readAllLines( new BufferedReader( new InputStreamReader( zip.getInputStream( entry ), Charset.defaultCharset() ) ) );
+         if( GradingMetrics.ENABLED ) GradingMetrics.record( GradingMetrics.Phase.READ, start );
+         return lines;
+      }
+
+      public File getFile() {
+         return null;
+      }
+
+      public void writeResults( ResultWriter writer, String resultsText ) {
+         //Archive entries have nowhere to put a results file of their own
+      }
+   }
+
+   /**
+      Get the file name of an archive entry, without its folders. Archives made on Windows may
+      separate folders with backslashes
+   */
+   private static String getBaseName( ZipEntry entry ) {
+      String name = entry.getName();
+      return name.substring( Math.max( name.lastIndexOf('/'), name.lastIndexOf('\\') ) + 1 );
+   }
+
+   /**
+      Read every line from a reader, then close it
+   */
+   private static List<String> readAllLines( BufferedReader reader ) throws IOException {
+      ArrayList<String> lines = new ArrayList<String>();
+      try( BufferedReader in = reader ) {
+         for( String line = in.readLine(); line != null; line = in.readLine() )
+            lines.add( line );
+      }
+
+      return lines;
+   }
+}
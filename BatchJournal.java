@@ -0,0 +1,267 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+   BatchJournal.java
+
+   The checkpoint of batch grading, so that a batch that is stopped part of the way through (by
+   running out of memory, being killed, or a power cut) carries on where it left off when it is run
+   again, instead of starting over.
+
+   Each student file whose results file has been written is added to the end of the journal,
+   .grader/batch.journal in the grading folder, with
+
+      - the fingerprint of its solution file and the grading options
+      - the SHA-256 hash of the student file
+      - the SHA-256 hash of the results file that was written
+      - its score, its points possible and the number of answers
+
+   When the batch runs again, a student file is not graded again if its journal entry has the same
+   solution file, grading options and student file, and its results file still has the hash that
+   was written. Its results are read back from the results file, so the output and the summary are
+   the same as for a run that was never stopped. Anything else (a results file that was only half
+   written, an edited student file, a changed solution file) is graded again.
+
+   The journal is only ever added to while grading. When it is opened, the latest entry of each
+   student file is written to a new journal, which replaces the old one, so it does not keep growing
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see BatchGrader
+*/
+public final class BatchJournal implements AutoCloseable {
+
+   public static final String JOURNAL_FILE_NAME = "batch.journal";
+
+   private static final String VERSION = "grader-journal 1";
+
+   private final File file;
+   private final HashMap<String, Entry> entries;
+   private final BufferedWriter out;
+
+   private BatchJournal( File file, HashMap<String, Entry> entries ) throws IOException {
+      this.file = file;
+      this.entries = entries;
+
+      //Keep the latest entry of each student file. Each batch writes its own temporary file
+      Path temp = Files.createTempFile( file.getParentFile().toPath(), file.getName(), ".tmp" );
+      try {
+         try( BufferedWriter compacted = Files.newBufferedWriter( temp, StandardCharsets.UTF_8 ) ) {
+            compacted.write( VERSION );
+            compacted.newLine();
+            for( Entry entry : entries.values() ) {
+               compacted.write( entry.toLine() );
+               compacted.newLine();
+            }
+         }
+         try {
+            Files.move( temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+         } catch( AtomicMoveNotSupportedException e ) {
+            Files.move( temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+         }
+      } finally {
+         Files.deleteIfExists( temp );
+      }
+
+      this.out = Files.newBufferedWriter( file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.APPEND );
+   }
+
+   /**
+      Open the journal of a grading folder, creating it if there is none
+
+      @param directory The grading folder
+      @return BatchJournal The journal, with the entries of earlier runs
+      @throws IOException If the journal cannot be read or written
+   */
+   public static BatchJournal open( File directory ) throws IOException {
+      File folder = new File( directory, ProblemIndex.SIDECAR_FOLDER_NAME );
+      folder.mkdirs();
+      File file = new File( folder, JOURNAL_FILE_NAME );
+
+      HashMap<String, Entry> entries = new HashMap<String, Entry>();
+      if( file.exists() ) {
+         List<String> lines = Files.readAllLines( file.toPath(), StandardCharsets.UTF_8 );
+         if( !lines.isEmpty() && lines.get(0).equals( VERSION ) ) {
+            for( String line : lines.subList( 1, lines.size() ) ) {
+               Entry entry = Entry.parse( line );
+               if( entry != null ) entries.put( entry.studentFileName, entry ); //A line cut off by a crash is skipped
+            }
+         }
+      }
+
+      return new BatchJournal( file, entries );
+   }
+
+   public File getFile() {
+      return file;
+   }
+
+   /**
+      Get the fingerprint of a solution file and the grading options, so that entries from a
+      different solution file or different grading options are not used
+
+      @param solutionFile The solution text file
+      @param settings The grading options
+      @return String The fingerprint
+      @throws IOException If the solution file cannot be read
+   */
+   public static String fingerprint( File solutionFile, GraderSettings settings ) throws IOException {
+      MessageDigest digest = newDigest();
+      digest.update( Files.readAllBytes( solutionFile.toPath() ) );
+      digest.update( settings.toString().getBytes( StandardCharsets.UTF_8 ) );
+      return toHex( digest.digest() );
+   }
+
+   /**
+      Get the hash of the lines of a student file
+
+      @param lines The lines
+      @return String The SHA-256 hash, in hexadecimal
+   */
+   public static String hash( List<String> lines ) {
+      MessageDigest digest = newDigest();
+      for( String line : lines ) {
+         digest.update( line.getBytes( StandardCharsets.UTF_8 ) );
+         digest.update( (byte)'\n' );
+      }
+
+      return toHex( digest.digest() );
+   }
+
+   /**
+      Get the hash of the text of a results file, as it is written to the file
+
+      @param resultsText The results
+      @return String The SHA-256 hash, in hexadecimal
+   */
+   public static String hash( String resultsText ) {
+      return toHex( newDigest().digest( resultsText.getBytes( Charset.defaultCharset() ) ) );
+   }
+
+   /**
+      Find the entry of a student file that was graded by an earlier run, and read back its results
+
+      @param studentFile The student file
+      @param keyFingerprint The fingerprint of the solution file and the grading options
+      @param inputHash The hash of the lines of the student file
+      @return Entry The entry, with its results text, or null if the student file has to be graded
+   */
+   public Entry resume( File studentFile, String keyFingerprint, String inputHash ) {
+      Entry entry;
+      synchronized( this ) {
+         entry = entries.get( studentFile.getName() );
+      }
+      if( entry == null || !entry.keyFingerprint.equals( keyFingerprint ) || !entry.inputHash.equals( inputHash ) )
+         return null;
+
+      File resultsFile = Grader.getResultsFile( studentFile );
+      try {
+         byte[] bytes = Files.readAllBytes( resultsFile.toPath() );
+         if( !toHex( newDigest().digest( bytes ) ).equals( entry.outputHash ) ) return null;
+         return entry.withResultsText( new String( bytes, Charset.defaultCharset() ) );
+      } catch( IOException e ) {
+         return null; //The results file is gone
+      }
+   }
+
+   /**
+      Add a student file to the end of the journal, once its results file has been written
+
+      @param entry The entry
+      @throws IOException If the journal cannot be written
+   */
+   public synchronized void append( Entry entry ) throws IOException {
+      entries.put( entry.studentFileName, entry );
+      out.write( entry.toLine() );
+      out.newLine();
+      out.flush();
+   }
+
+   public synchronized void close() throws IOException {
+      out.close();
+   }
+
+   private static MessageDigest newDigest() {
+      try {
+         return MessageDigest.getInstance("SHA-256");
+      } catch( NoSuchAlgorithmException e ) {
+         throw new IllegalStateException( e ); //Every Java platform has SHA-256
+      }
+   }
+
+   private static String toHex( byte[] bytes ) {
+      StringBuilder hex = new StringBuilder( bytes.length * 2 );
+      for( byte b : bytes )
+         hex.append( String.format( "%02x", b ) );
+      return hex.toString();
+   }
+
+   /**
+      One student file that was graded and whose results file was written
+   */
+   public static final class Entry {
+      public final String studentFileName;
+      public final String keyFingerprint;
+      public final String inputHash;
+      public final String outputHash;
+      public final double totalPoints;
+      public final double maxPoints;
+      public final int answers;
+      public final String resultsText; //Only set when resumed
+
+      public Entry( String studentFileName, String keyFingerprint, String inputHash, String outputHash,
+                    double totalPoints, double maxPoints, int answers ) {
+         this( studentFileName, keyFingerprint, inputHash, outputHash, totalPoints, maxPoints, answers, null );
+      }
+
+      private Entry( String studentFileName, String keyFingerprint, String inputHash, String outputHash,
+                     double totalPoints, double maxPoints, int answers, String resultsText ) {
+         this.studentFileName = studentFileName;
+         this.keyFingerprint = keyFingerprint;
+         this.inputHash = inputHash;
+         this.outputHash = outputHash;
+         this.totalPoints = totalPoints;
+         this.maxPoints = maxPoints;
+         this.answers = answers;
+         this.resultsText = resultsText;
+      }
+
+      Entry withResultsText( String resultsText ) {
+         return new Entry( studentFileName, keyFingerprint, inputHash, outputHash, totalPoints, maxPoints, answers, resultsText );
+      }
+
+      /**
+         @return String The line of the journal, with the fields separated by tabs
+      */
+      String toLine() {
+         return studentFileName + "\t" + keyFingerprint + "\t" + inputHash + "\t" + outputHash + "\t" +
+                totalPoints + "\t" + maxPoints + "\t" + answers;
+      }
+
+      /**
+         @return Entry The entry of a line of the journal, or null if the line is not complete
+      */
+      static Entry parse( String line ) {
+         String[] fields = line.split( "\t", -1 );
+         if( fields.length != 7 ) return null;
+         try {
+            return new Entry( fields[0], fields[1], fields[2], fields[3], Double.parseDouble( fields[4] ),
+                              Double.parseDouble( fields[5] ), Integer.parseInt( fields[6] ) );
+         } catch( NumberFormatException e ) {
+            return null;
+         }
+      }
+   }
+}
@@ -0,0 +1,302 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+   CorpusGenerator.java
+
+   Writes a made-up class for load testing and benchmarks: a Solutions_ASSIGNMENT.txt file and a
+   NAME_ASSIGNMENT.txt file for each student. The solution file uses every part of the solution
+   format -- & alternates, ; range, partial credit and comment tags, | groups, fractions and lists.
+
+   Each student answer is picked from a set of answer kinds. The share of each kind can be changed:
+
+      correct    One of the accepted answers, written any of the accepted ways
+      mistakes   A common mistake that has its own partial credit alternate, eg. a switched pair
+      typos      An accepted answer with a typo: swapped or repeated letters, changed caps or extra spaces
+      blanks     The problem number with no answer
+      missing    The line is left out of the file
+      (the rest) A wrong answer
+
+   The same seed always writes the same files, no matter how many threads are used, so that runs
+   can be compared. Run it with
+
+      java CorpusGenerator [--out DIR] [--assignment NAME] [--students N] [--problems N] [--seed N]
+                           [--correct 0.70] [--mistakes 0.12] [--typos 0.05] [--blanks 0.04] [--missing 0.02]
+
+   For example, --students 100000 --problems 500 writes a full-size corpus of about 50 million answers
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+*/
+public class CorpusGenerator {
+
+   private static final String[] FIRST_NAMES = { "Avery", "Blake", "Carmen", "Dana", "Eli", "Farah", "Gus", "Hana",
+                                                 "Ivan", "Jada", "Kofi", "Lena", "Mateo", "Nia", "Omar", "Priya",
+                                                 "Quinn", "Rosa", "Sam", "Tariq", "Uma", "Vera", "Wes", "Ximena",
+                                                 "Yusuf", "Zoe" };
+
+   private static final String[][] SHAPES = { { "Rectangle", "Rect", "Parallelogram", "Paralelogram", "Square" },
+                                              { "Rhombus", "Rhombi", "Parallelogram", "Paralelogram", "Kite" },
+                                              { "Trapezoid", "Trapezium", "Quadrilateral", "Quad", "Parallelogram" } };
+
+   private final long seed;
+   private final int problems;
+   private final double correct, mistakes, typos, blanks, missing;
+
+   /*Per problem: the solution line, the answers that get full credit, and the common mistakes*/
+   private final String[] solutionLines;
+   private final String[][] correctAnswers;
+   private final String[][] mistakeAnswers;
+
+   /**
+      @param seed The seed for all random choices
+      @param problems The number of problems
+      @param correct The share of correct answers, from 0.0 to 1.0
+      @param mistakes The share of common mistakes
+      @param typos The share of correct answers with a typo
+      @param blanks The share of blank answers
+      @param missing The share of missing lines
+      @throws IllegalArgumentException If a share is negative or the shares add up to more than 1.0
+   */
+   public CorpusGenerator( long seed, int problems, double correct, double mistakes, double typos, double blanks, double missing ) {
+      if( correct < 0 || mistakes < 0 || typos < 0 || blanks < 0 || missing < 0 || correct + mistakes + typos + blanks + missing > 1.0 + 1e-9 )
+         throw new IllegalArgumentException("Answer shares must be from 0.0 to 1.0 and add up to at most 1.0");
+
+      this.seed = seed;
+      this.problems = problems;
+      this.correct = correct;
+      this.mistakes = mistakes;
+      this.typos = typos;
+      this.blanks = blanks;
+      this.missing = missing;
+
+      solutionLines = new String[ problems ];
+      correctAnswers = new String[ problems ][];
+      mistakeAnswers = new String[ problems ][];
+      Random random = new Random( seed );
+      for( int p = 0; p < problems; p++ )
+         createProblem( p, random );
+   }
+
+   /**
+      Make up one problem of a random kind
+
+      @param p The position of the problem
+      @param random The random choices for the solution file
+   */
+   private void createProblem( int p, Random random ) {
+      int number = p + 1;
+      switch( random.nextInt( 6 ) ) {
+         case 0: { //Whole number, with partial credit for two common mistakes
+            int v = 10 + random.nextInt( 990 );
+            solutionLines[p] = number + ". " + v + " & " + v + ".0 & " + (v * 2) + ";Multiplied by 2 instead of dividing;0.0 & " +
+                               (v - 6) + ";Subtracted instead of added;0.5";
+            correctAnswers[p] = new String[]{ "" + v, v + ".0" };
+            mistakeAnswers[p] = new String[]{ "" + (v * 2), "" + (v - 6) };
+            break;
+         }
+         case 1: { //Word, with a | group of spellings and a comment on a wrong shape
+            String[] shape = SHAPES[ random.nextInt( SHAPES.length ) ];
+            solutionLines[p] = number + ". " + shape[0] + " & " + shape[1] + " & " + shape[2] + " | " + shape[3] + " & " + shape[4] +
+                               "; Can't be a " + shape[4].toLowerCase() + " because the sides are not all equal; 0.5";
+            correctAnswers[p] = new String[]{ shape[0], shape[1].toLowerCase(), shape[2] };
+            mistakeAnswers[p] = new String[]{ shape[4] };
+            break;
+         }
+         case 2: { //Fraction, with its decimal
+            int b = 2 + random.nextInt( 18 );
+            int a = 1 + random.nextInt( b - 1 );
+            String decimal = GradingSession.checkAndConvertToDecimal( a + "/" + b, true );
+            solutionLines[p] = number + ". " + a + "/" + b + " & " + decimal;
+            correctAnswers[p] = new String[]{ a + "/" + b, decimal };
+            mistakeAnswers[p] = new String[]{ b + "/" + a };
+            break;
+         }
+         case 3: { //Ordered pair, with partial credit when the values are switched
+            int x = 1 + random.nextInt( 20 ), y = x + 1 + random.nextInt( 20 );
+            solutionLines[p] = number + ". (" + x + ", " + y + ") & (" + x + "," + y + ") & " + x + ", " + y + " & " + x + "," + y +
+                               " & " + y + ", " + x + " | (" + y + ", " + x + ") ; Values are switched! ; 0.5";
+            correctAnswers[p] = new String[]{ "(" + x + ", " + y + ")", x + "," + y, x + ", " + y };
+            mistakeAnswers[p] = new String[]{ "(" + y + ", " + x + ")", y + ", " + x };
+            break;
+         }
+         case 4: { //Decimal, with a range for full credit and a wider range for partial credit
+            int whole = 100 + random.nextInt( 900 );
+            String v = whole + ".57";
+            solutionLines[p] = number + ". " + v + " ; Range 1.0 & " + v + " ; Range 1.0 to 5.0 ; 0.5 ; Didn't multiply by acceleration?";
+            correctAnswers[p] = new String[]{ v, whole + ".2", (whole + 1) + ".1" };
+            mistakeAnswers[p] = new String[]{ (whole + 3) + ".5", (whole - 2) + ".9" };
+            break;
+         }
+         default: { //List where the order does not matter (unless the settings say it does)
+            int a = 1 + random.nextInt( 9 );
+            int step = 1 + random.nextInt( 4 );
+            String list = a + ", " + (a + step) + ", " + (a + 2 * step);
+            solutionLines[p] = number + ". " + list;
+            correctAnswers[p] = new String[]{ list, (a + 2 * step) + ", " + (a + step) + ", " + a, a + "," + (a + step) + "," + (a + 2 * step) };
+            mistakeAnswers[p] = new String[]{ a + ", " + (a + step) };
+            break;
+         }
+      }
+   }
+
+   /**
+      Write the solution file and every student file of an assignment
+
+      @param folder Where to write the files
+      @param assignment The assignment name, eg. HW1
+      @param students The number of students
+      @return long The number of bytes written
+      @throws IOException If a file cannot be written
+   */
+   public long writeCorpus( File folder, String assignment, int students ) throws IOException {
+      folder.mkdirs();
+      AtomicLong bytes = new AtomicLong();
+
+      File solutionFile = new File( folder, "Solutions_" + assignment + ".txt" );
+      bytes.addAndGet( writeLines( solutionFile, solutionLines ) );
+
+      try {
+         IntStream.range( 0, students ).parallel().forEach( s -> {
+            try {
+               bytes.addAndGet( writeLines( new File( folder, getStudentName( s ) + "_" + assignment + ".txt" ), studentLines( s ) ) );
+            } catch( IOException e ) {
+               throw new UncheckedIOException( e );
+            }
+         } );
+      } catch( UncheckedIOException e ) {
+         throw e.getCause();
+      }
+
+      return bytes.get();
+   }
+
+   /**
+      @return String[] The lines of the solution file
+   */
+   public String[] solutionLines() {
+      return solutionLines.clone();
+   }
+
+   /**
+      Make up the answers of one student. Each student has their own seed, so any student can be
+      made again without making the students before them
+
+      @param student The number of the student, from 0
+      @return String[] The lines of the student file
+   */
+   public String[] studentLines( int student ) {
+      Random random = new Random( seed * 0x9E3779B97F4A7C15L + student );
+      ArrayList<String> lines = new ArrayList<String>( problems );
+      for( int p = 0; p < problems; p++ ) {
+         double roll = random.nextDouble();
+         String number = (p + 1) + ". ";
+
+         if( (roll -= correct) < 0 )       lines.add( number + pick( correctAnswers[p], random ) );
+         else if( (roll -= mistakes) < 0 ) lines.add( number + pick( mistakeAnswers[p], random ) );
+         else if( (roll -= typos) < 0 )    lines.add( number + addTypo( pick( correctAnswers[p], random ), random ) );
+         else if( (roll -= blanks) < 0 )   lines.add( number );
+         else if( (roll -= missing) < 0 )  continue;
+         else                              lines.add( number + (random.nextInt( 2000 ) - 1000) );
+      }
+
+      return lines.toArray( new String[0] );
+   }
+
+   /**
+      Get the name of a student. Names never have _ or - in them, since those separate the name from
+      the assignment in the file name
+
+      @param student The number of the student, from 0
+      @return String The name, eg. Avery27
+   */
+   public static String getStudentName( int student ) {
+      return FIRST_NAMES[ student % FIRST_NAMES.length ] + student;
+   }
+
+   private static String pick( String[] answers, Random random ) {
+      return answers[ random.nextInt( answers.length ) ];
+   }
+
+   /**
+      Add one typo to an answer
+
+      @param answer The answer
+      @param random The random choices for this student
+      @return String The answer with a typo
+   */
+   private static String addTypo( String answer, Random random ) {
+      if( answer.length() < 2 ) return answer + answer;
+
+      int i = random.nextInt( answer.length() - 1 );
+      switch( random.nextInt( 4 ) ) {
+         case 0:  return answer.substring( 0, i ) + answer.charAt( i + 1 ) + answer.charAt( i ) + answer.substring( i + 2 ); //swapped
+         case 1:  return answer.substring( 0, i + 1 ) + answer.substring( i ); //repeated
+         case 2:  return answer.toUpperCase();
+         default: return " " + answer.replace( ",", " , " ) + "  ";
+      }
+   }
+
+   private static long writeLines( File file, String[] lines ) throws IOException {
+      long bytes = 0;
+      try( BufferedWriter writer = Files.newBufferedWriter( file.toPath(), StandardCharsets.UTF_8 ) ) {
+         for( int i = 0; i < lines.length; i++ ) {
+            if( i > 0 ) writer.write('\n');
+            writer.write( lines[i] );
+            bytes += lines[i].length() + (i > 0 ? 1 : 0);
+         }
+      }
+      return bytes;
+   }
+
+   public static void main( String[] args ) throws IOException {
+      File folder = new File(".");
+      String assignment = "Load";
+      int students = 30, problems = 20;
+      long seed = 1;
+      double correct = 0.70, mistakes = 0.12, typos = 0.05, blanks = 0.04, missing = 0.02;
+
+      try {
+         for( int i = 0; i < args.length; i++ ) {
+            String name = args[i];
+            if( i + 1 >= args.length ) throw new IllegalArgumentException( "Missing a value for " + name );
+            String value = args[ ++i ];
+            switch( name ) {
+               case "--out":        folder = new File( value );                break;
+               case "--assignment": assignment = value;                        break;
+               case "--students":   students = Integer.parseInt( value );      break;
+               case "--problems":   problems = Integer.parseInt( value );      break;
+               case "--seed":       seed = Long.parseLong( value );            break;
+               case "--correct":    correct = Double.parseDouble( value );     break;
+               case "--mistakes":   mistakes = Double.parseDouble( value );    break;
+               case "--typos":      typos = Double.parseDouble( value );       break;
+               case "--blanks":     blanks = Double.parseDouble( value );      break;
+               case "--missing":    missing = Double.parseDouble( value );     break;
+               default: throw new IllegalArgumentException( "Unknown option " + name );
+            }
+         }
+         if( assignment.contains("_") || assignment.contains("-") )
+            throw new IllegalArgumentException("The assignment name cannot have _ or - in it");
+
+         long start = System.nanoTime();
+         CorpusGenerator generator = new CorpusGenerator( seed, problems, correct, mistakes, typos, blanks, missing );
+         long bytes = generator.writeCorpus( folder, assignment, students );
+         long millis = (System.nanoTime() - start) / 1000000;
+
+         System.out.println("Wrote Solutions_" + assignment + ".txt and " + students + " student files with " + problems +
+                            " problems to " + folder.getPath() + " (" + bytes / 1024 + " KB in " + millis + " ms)");
+      } catch( IllegalArgumentException e ) {
+         System.out.println( e.getMessage() );
+         System.out.println("Usage: java CorpusGenerator [--out DIR] [--assignment NAME] [--students N] [--problems N] [--seed N]\n" +
+                            "                           [--correct 0.70] [--mistakes 0.12] [--typos 0.05] [--blanks 0.04] [--missing 0.02]");
+      }
+   }
+}
@@ -0,0 +1,359 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+   CsvGrader.java
+
+   Grades a wide CSV or TSV file, such as the export of an online form, without making a student
+   file for each row. The first row names the columns, every other row is one student, and each
+   column whose name is a problem number of the solution file holds the answers to that problem:
+
+      Timestamp,Name,1,2,3a,3b
+      10/19/26 9:02,Ada Lovelace,23,Rectangle,4/5,"(4, 5)"
+
+   Column names such as "#3a", "Q3a", "Question 3a" or "3a." are matched to problem 3a as well.
+   The student's name comes from a column named Name, Student, Student Name or Full Name, or from
+   the columns with "name" in their names joined together (eg. First Name and Last Name), or else
+   from the first column that is not a problem. Columns that are neither are ignored.
+
+      java Grader csv FORM.csv ASSIGNMENT [SCORES.csv]
+
+   The file is read and graded one row at a time, so it can be any size, and quoted fields may
+   contain commas, quotes and line breaks. The scores are written to a CSV file in the same shape
+   (FORM_Scores.csv by default): one row for each student, with the points for each problem, then
+   the total, the points possible and the percent. A file ending in .tsv is read and written with
+   tabs instead of commas
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see Grader
+   @see GradingSession
+*/
+public class CsvGrader {
+
+   private static final String[] NAME_COLUMNS = {"name","student","student name","full name"};
+   private static final String[] PROBLEM_PREFIXES = {"question","problem","#","q"};
+
+   private final GradingSession session;
+   private final File solutionFile;
+   private final String solutionFileName;
+
+   /**
+      @param session The grading session for the solution file
+      @param solutionFile The solution text file
+   */
+   public CsvGrader( GradingSession session, File solutionFile ) {
+      this.session = session;
+      this.solutionFile = solutionFile;
+      this.solutionFileName = solutionFile.getName();
+   }
+
+   /**
+      Get the default scores file for a form file, eg. Form_Scores.csv for Form.csv
+
+      @param formFile The CSV or TSV file of answers
+      @return File The scores file, in the same folder
+   */
+   public static File getScoresFile( File formFile ) {
+      String name = formFile.getName();
+      int dot = name.lastIndexOf(".");
+      String extension = dot == -1 ? ".csv" : name.substring( dot );
+      return new File( formFile.getAbsoluteFile().getParentFile(), (dot == -1 ? name : name.substring( 0, dot )) + "_Scores" + extension );
+   }
+
+   /**
+      Grade every row of a form file and write the scores file
+
+      @param formFile The CSV or TSV file of answers, with a header row
+      @param scoresFile The CSV or TSV file to write the scores to. It replaces any earlier scores
+                        file once every row is graded
+      @return String A summary: the rows graded, the columns that were used, and any errors
+      @throws IOException If the form file cannot be read or the scores file cannot be written
+   */
+   public String grade( File formFile, File scoresFile ) throws IOException {
+      long start = System.nanoTime();
+      char delimiter = isTsv( formFile ) ? '\t' : ',';
+      char outDelimiter = isTsv( scoresFile ) ? '\t' : ',';
+      AnswerKey key = session.getKey();
+
+      StringBuilder text = new StringBuilder();
+      //A uniquely named temporary file, so two runs writing the same scores file cannot clobber each other's
+      File absoluteScoresFile = scoresFile.getAbsoluteFile();
+      File temp = Files.createTempFile( absoluteScoresFile.getParentFile().toPath(), absoluteScoresFile.getName(), ".tmp" ).toFile();
+      int rows = 0, errors = 0;
+      try( Parser parser = new Parser( Files.newBufferedReader( formFile.toPath(), StandardCharsets.UTF_8 ), delimiter );
+           BufferedWriter out = Files.newBufferedWriter( temp.toPath(), StandardCharsets.UTF_8 ) ) {
+         List<String> header = parser.next();
+         if( header == null ) throw new IOException( formFile.getName() + " is empty" );
+
+         Columns columns = new Columns( header, key );
+         if( columns.problems.isEmpty() )
+            throw new IOException( "No column of " + formFile.getName() + " is a problem number of " + solutionFileName );
+
+         //Header of the scores file
+         ArrayList<String> cells = new ArrayList<String>();
+         cells.add( "student" );
+         cells.addAll( columns.problemIds );
+         cells.add( "total" );
+         cells.add( "maxPoints" );
+         cells.add( "percent" );
+         writeRow( out, cells, outDelimiter );
+
+         for( List<String> row = parser.next(); row != null; row = parser.next() ) {
+            if( isBlank( row ) ) continue;
+            rows++;
+
+            String studentName = columns.getStudentName( row, rows + 1 );
+            ArrayList<String> answers = new ArrayList<String>( columns.problems.size() );
+            for( int column : columns.problems )
+               answers.add( column < row.size() ? row.get( column ) : "" );
+
+            GradingSession.Result result = session.grade( new GradingSession.Submission( studentName, columns.problemIds, answers ) );
+            cells.clear();
+            cells.add( studentName );
+
+            String errorText = Grader.getErrorText( result, studentName + " (row " + (rows + 1) + ")", solutionFileName );
+            if( errorText != null ) {
+               errors++;
+               text.append( errorText );
+            } else {
+               HashMap<String, Double> points = new HashMap<String, Double>();
+               for( GradingSession.Verdict verdict : result.verdicts )
+                  points.put( verdict.problemId, verdict.points );
+               for( String problemId : columns.problemIds ) {
+                  Double problemPoints = points.get( problemId );
+                  cells.add( Json.number( problemPoints == null ? 0.0 : problemPoints ) );
+               }
+               cells.add( Json.number( result.totalPoints ) );
+               cells.add( Json.number( result.maxPoints ) );
+               cells.add( String.format( "%.1f", result.maxPoints == 0.0 ? 100.0 : 100.0 * result.totalPoints / result.maxPoints ) );
+            }
+            writeRow( out, cells, outDelimiter );
+         }
+
+         text.append( String.format( "%nGraded %d rows of %s against %s in %.2f seconds (%d could not be graded)%n",
+                                     rows, formFile.getName(), solutionFileName, (System.nanoTime() - start) / 1e9, errors ) );
+         text.append( "Problem columns: " ).append( String.join( ", ", columns.problemIds ) ).append( "\n" );
+         if( !columns.ignored.isEmpty() )
+            text.append( "Columns that were not used: " ).append( String.join( ", ", columns.ignored ) ).append( "\n" );
+      } catch( IOException | RuntimeException e ) {
+         temp.delete();
+         throw e;
+      }
+
+      try {
+         Files.move( temp.toPath(), scoresFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+      } catch( AtomicMoveNotSupportedException e ) {
+         Files.move( temp.toPath(), scoresFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+      } finally {
+         Files.deleteIfExists( temp.toPath() );
+      }
+
+      if( AlternateOrder.ENABLED ) key.alternateOrder().save( solutionFile );
+      text.append( "Scores written to " ).append( scoresFile.getPath() ).append( "\n" );
+      return text.toString();
+   }
+
+   private static boolean isTsv( File file ) {
+      return file.getName().toLowerCase().endsWith(".tsv");
+   }
+
+   private static boolean isBlank( List<String> row ) {
+      for( String cell : row )
+         if( !cell.trim().isEmpty() ) return false;
+
+      return true;
+   }
+
+   /**
+      Write one row, quoting any field that has the delimiter, a quote or a line break
+   */
+   private static void writeRow( BufferedWriter out, List<String> cells, char delimiter ) throws IOException {
+      for( int i = 0; i < cells.size(); i++ ) {
+         if( i > 0 ) out.write( delimiter );
+         String cell = cells.get(i);
+         if( cell.indexOf( delimiter ) == -1 && cell.indexOf('"') == -1 && cell.indexOf('\n') == -1 && cell.indexOf('\r') == -1 ) {
+            out.write( cell );
+         } else {
+            out.write( '"' );
+            out.write( cell.replace( "\"", "\"\"" ) );
+            out.write( '"' );
+         }
+      }
+      out.write( '\n' );
+   }
+
+   /**
+      Which columns of the form file hold the student's name, and which hold the answers to each problem
+   */
+   private static final class Columns {
+      final ArrayList<Integer> problems = new ArrayList<Integer>();
+      final ArrayList<String> problemIds = new ArrayList<String>();
+      final ArrayList<Integer> names = new ArrayList<Integer>();
+      final ArrayList<String> ignored = new ArrayList<String>();
+
+      Columns( List<String> header, AnswerKey key ) {
+         ArrayList<Integer> other = new ArrayList<Integer>();
+         ArrayList<Integer> containName = new ArrayList<Integer>();
+         for( int column = 0; column < header.size(); column++ ) {
+            String name = header.get( column ).trim();
+            String problemId = toProblemId( name, key );
+            if( problemId != null && !problemIds.contains( problemId ) ) {
+               problems.add( column );
+               problemIds.add( problemId );
+               continue;
+            }
+
+            String lower = name.toLowerCase();
+            boolean isName = false;
+            for( String nameColumn : NAME_COLUMNS )
+               isName |= lower.equals( nameColumn );
+            if( isName && names.isEmpty() ) names.add( column );
+            else if( lower.contains("name") ) containName.add( column );
+            else other.add( column );
+         }
+
+         if( names.isEmpty() ) names.addAll( containName );
+         else                  other.addAll( containName );
+         if( names.isEmpty() && !other.isEmpty() ) names.add( other.remove( 0 ) );
+
+         other.sort( null );
+         for( int column : other )
+            ignored.add( header.get( column ).trim() );
+      }
+
+      /**
+         Match a column name to a problem number of the key, eg. "Question 3a" to 3a
+
+         @return String The problem number, or null if the column is not a problem
+      */
+      private static String toProblemId( String name, AnswerKey key ) {
+         String id = name.replaceFirst( "[.:)]+$", "" ).trim();
+         if( id.isEmpty() ) return null;
+         if( key.indexOf( id ) != -1 ) return id;
+
+         String lower = id.toLowerCase();
+         for( String prefix : PROBLEM_PREFIXES ) {
+            if( lower.startsWith( prefix ) ) {
+               String rest = id.substring( prefix.length() ).replaceFirst( "^[\\s.#:]+", "" );
+               if( !rest.isEmpty() && key.indexOf( rest ) != -1 ) return rest;
+            }
+         }
+
+         return null;
+      }
+
+      /**
+         @return String The name of the student of a row, or "Row N" if the row has none
+      */
+      String getStudentName( List<String> row, int rowNumber ) {
+         StringBuilder name = new StringBuilder();
+         for( int column : names ) {
+            String part = column < row.size() ? row.get( column ).trim() : "";
+            if( part.isEmpty() ) continue;
+            if( name.length() > 0 ) name.append( ' ' );
+            name.append( part );
+         }
+
+         return name.length() == 0 ? "Row " + rowNumber : name.toString();
+      }
+   }
+
+   /**
+      Reads the rows of a CSV or TSV file one at a time. Fields in quotes may contain the delimiter,
+      line breaks, and quotes written twice (""). A byte order mark at the start is skipped
+   */
+   static final class Parser implements AutoCloseable {
+      private final Reader in;
+      private final char delimiter;
+      private final char[] buffer = new char[ 64 * 1024 ];
+      private int position = 0, limit = 0;
+      private boolean first = true;
+
+      Parser( Reader in, char delimiter ) {
+         this.in = in instanceof BufferedReader ? in : new BufferedReader( in );
+         this.delimiter = delimiter;
+      }
+
+      /**
+         @return int The next character, or -1 at the end of the file
+      */
+      private int read() throws IOException {
+         if( position == limit ) {
+            limit = in.read( buffer, 0, buffer.length );
+            position = 0;
+            if( limit <= 0 ) {
+               limit = 0;
+               return -1;
+            }
+         }
+
+         return buffer[ position++ ];
+      }
+
+      private int peek() throws IOException {
+         int c = read();
+         if( c != -1 ) position--;
+         return c;
+      }
+
+      /**
+         Read the next row
+
+         @return List<String> The fields of the row, or null at the end of the file
+      */
+      List<String> next() throws IOException {
+         int c = read();
+         if( first ) {
+            first = false;
+            if( c == '\uFEFF' ) c = read();
+         }
+         if( c == -1 ) return null;
+
+         ArrayList<String> fields = new ArrayList<String>();
+         StringBuilder field = new StringBuilder();
+         boolean quoted = false;
+         while( true ) {
+            if( quoted ) {
+               if( c == -1 ) throw new IOException( "A quoted field is not closed before the end of the file" );
+               if( c == '"' ) {
+                  if( peek() == '"' ) {
+                     read();
+                     field.append( '"' );
+                  } else {
+                     quoted = false;
+                  }
+               } else {
+                  field.append( (char)c );
+               }
+            } else if( c == '"' && field.length() == 0 ) {
+               quoted = true;
+            } else if( c == delimiter ) {
+               fields.add( field.toString() );
+               field.setLength( 0 );
+            } else if( c == '\r' || c == '\n' || c == -1 ) {
+               if( c == '\r' && peek() == '\n' ) read();
+               fields.add( field.toString() );
+               return fields;
+            } else {
+               field.append( (char)c );
+            }
+            c = read();
+         }
+      }
+
+      public void close() throws IOException {
+         in.close();
+      }
+   }
+}
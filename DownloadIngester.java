@@ -0,0 +1,298 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+   DownloadIngester.java
+
+   Moves downloaded student files (presumably from Schoology or another online software) into the
+   grading folder. Every folder in the downloads folder that changed within the last few minutes is
+   walked, on its own thread, and every file found is fingerprinted by the SHA-256 hash of its
+   contents. A file is a duplicate of another only if it has the same name and the same contents,
+   so two students who turned in the same answers both have their files moved. Then
+
+      - files with the same name and contents as a file that was already moved by an earlier run,
+        such as a set of submissions that was downloaded again, are skipped
+      - of the files with the same name and contents in this run, only one is moved
+      - files whose name is already taken in the grading folder by a different file are not moved
+
+   and the rest are moved at the same time. The moved files are added to the ledger
+   .grader/ingested.txt in the grading folder, one line each with the hash of the contents and the
+   file name separated by a tab, so that each run only moves new arrivals. Skipped files are left in
+   the downloads folder
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see Grader
+*/
+public class DownloadIngester {
+
+   public static final String LEDGER_FILE_NAME = "ingested.txt";
+
+   /*Only folders that changed within this many milliseconds are walked*/
+   public static final long DEFAULT_MAX_AGE = 300000; //5 minutes
+
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private final Path downloads;
+   private final Path destination;
+   private final File ledgerFile;
+   private final int threads;
+
+   /**
+      @param downloads The downloads folder
+      @param destination The grading folder that the files are moved to
+      @param threads The number of threads that walk, fingerprint and move files
+   */
+   public DownloadIngester( Path downloads, Path destination, int threads ) {
+      this.downloads = downloads;
+      this.destination = destination;
+      this.ledgerFile = new File( new File( destination.toFile(), ProblemIndex.SIDECAR_FOLDER_NAME ), LEDGER_FILE_NAME );
+      this.threads = Math.max( 1, threads );
+   }
+
+   /**
+      Move the new files of every downloads folder that changed recently
+
+      @param maxAge Only folders that were changed within this many milliseconds are walked
+      @return Report The number of files that were moved and skipped
+      @throws IOException If the downloads folder cannot be read
+   */
+   public Report ingest( long maxAge ) throws IOException {
+      Report report = new Report();
+      long now = System.currentTimeMillis();
+
+      ArrayList<Path> folders = new ArrayList<Path>();
+      try( DirectoryStream<Path> entries = Files.newDirectoryStream( downloads ) ) {
+         for( Path entry : entries ) {
+            BasicFileAttributes attr = Files.readAttributes( entry, BasicFileAttributes.class );
+            if( attr.isDirectory() && now - attr.lastModifiedTime().toMillis() < maxAge )
+               folders.add( entry );
+         }
+      }
+
+      ExecutorService pool = Executors.newFixedThreadPool( threads );
+      try {
+         //1) Walk each folder
+         ArrayList<Future<List<Path>>> walks = new ArrayList<Future<List<Path>>>();
+         for( Path folder : folders )
+            walks.add( pool.submit( () -> walk( folder ) ) );
+         ArrayList<Path> files = new ArrayList<Path>();
+         for( Future<List<Path>> walk : walks )
+            files.addAll( await( walk ) );
+
+         //2) Fingerprint each file
+         ArrayList<Future<String>> hashes = new ArrayList<Future<String>>();
+         for( Path file : files )
+            hashes.add( pool.submit( () -> fingerprint( file ) ) );
+
+         //3) Choose the files to move, in a set order so that the same copy of a duplicate is always chosen
+         HashSet<String> ingested = readLedger();
+         HashMap<String, Path> chosen = new HashMap<String, Path>();
+         HashSet<String> namesTaken = new HashSet<String>();
+         ArrayList<Integer> order = new ArrayList<Integer>();
+         for( int i = 0; i < files.size(); i++ ) order.add( i );
+         order.sort( Comparator.comparing( (Integer i) -> files.get(i).getFileName().toString().length() )
+                               .thenComparing( i -> files.get(i).toString() ) );
+
+         ArrayList<Path> toMove = new ArrayList<Path>();
+         ArrayList<String> toMoveKeys = new ArrayList<String>();
+         for( int i : order ) {
+            Path file = files.get(i);
+            String hash = await( hashes.get(i) );
+            String name = file.getFileName().toString();
+            String key = hash + "\t" + name;
+            if( hash == null ) {
+               report.failed.add( file + ": could not be read" );
+            } else if( ingested.contains( key ) ) {
+               report.alreadyIngested++;
+            } else if( chosen.containsKey( key ) ) {
+               report.duplicates++;
+            } else if( Files.exists( destination.resolve( name ) ) || !namesTaken.add( name ) ) {
+               chosen.put( key, file );
+               report.nameConflicts.add( name );
+            } else {
+               chosen.put( key, file );
+               toMove.add( file );
+               toMoveKeys.add( key );
+            }
+         }
+
+         //4) Move the chosen files
+         ArrayList<Future<String>> moves = new ArrayList<Future<String>>();
+         for( Path file : toMove )
+            moves.add( pool.submit( () -> move( file ) ) );
+
+         ArrayList<String> ledgerLines = new ArrayList<String>();
+         for( int i = 0; i < moves.size(); i++ ) {
+            String failure = await( moves.get(i) );
+            if( failure == null ) {
+               report.moved++;
+               ledgerLines.add( toMoveKeys.get(i) );
+            } else {
+               report.failed.add( failure );
+            }
+         }
+         appendToLedger( ledgerLines );
+      } finally {
+         pool.shutdown();
+      }
+
+      Collections.sort( report.nameConflicts );
+      return report;
+   }
+
+   /**
+      Get every file in a folder and its subfolders
+
+      @param folder The folder to walk
+      @return List<Path> The files
+   */
+   private static List<Path> walk( Path folder ) throws IOException {
+      ArrayList<Path> files = new ArrayList<Path>();
+      Files.walkFileTree( folder, new SimpleFileVisitor<Path>() {
+         @Override
+         public FileVisitResult visitFile( Path file, BasicFileAttributes attr ) {
+            if( attr.isRegularFile() ) files.add( file );
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult visitFileFailed( Path file, IOException e ) {
+            return FileVisitResult.CONTINUE; //Unreadable entries are left where they are
+         }
+      } );
+
+      return files;
+   }
+
+   /**
+      Get the SHA-256 hash of the contents of a file
+
+      @param file The file
+      @return String The hash, in hexadecimal, or null if the file cannot be read
+   */
+   static String fingerprint( Path file ) {
+      try( InputStream in = Files.newInputStream( file ) ) {
+         MessageDigest digest = MessageDigest.getInstance("SHA-256");
+         byte[] buffer = new byte[ BUFFER_SIZE ];
+         for( int read = in.read( buffer ); read != -1; read = in.read( buffer ) )
+            digest.update( buffer, 0, read );
+
+         StringBuilder hex = new StringBuilder( 64 );
+         for( byte b : digest.digest() )
+            hex.append( String.format( "%02x", b ) );
+         return hex.toString();
+      } catch( IOException | NoSuchAlgorithmException e ) {
+         return null;
+      }
+   }
+
+   /**
+      Move a file into the grading folder, keeping its name
+
+      @param file The file to move
+      @return String Why the file could not be moved, or null if it was moved
+   */
+   private String move( Path file ) {
+      try {
+         Files.move( file, destination.resolve( file.getFileName() ) );
+         return null;
+      } catch( FileAlreadyExistsException e ) {
+         return file.getFileName() + ": already exists in " + destination;
+      } catch( IOException e ) {
+         return file + ": " + e;
+      }
+   }
+
+   /**
+      Read the files that earlier runs moved
+
+      @return HashSet<String> The lines of the ledger, the hash of the contents and the file name
+                              separated by a tab
+   */
+   private HashSet<String> readLedger() throws IOException {
+      HashSet<String> keys = new HashSet<String>();
+      if( !ledgerFile.exists() ) return keys;
+
+      keys.addAll( Files.readAllLines( ledgerFile.toPath(), StandardCharsets.UTF_8 ) );
+      return keys;
+   }
+
+   /**
+      Add the files that were moved to the ledger
+
+      @param lines One line for each file, the hash of the contents and the file name separated by a tab
+   */
+   private void appendToLedger( List<String> lines ) throws IOException {
+      if( lines.isEmpty() ) return;
+
+      ledgerFile.getParentFile().mkdirs();
+      try( BufferedWriter writer = Files.newBufferedWriter( ledgerFile.toPath(), StandardCharsets.UTF_8,
+                                                              StandardOpenOption.CREATE, StandardOpenOption.APPEND ) ) {
+         for( String line : lines ) {
+            writer.write( line );
+            writer.newLine();
+         }
+      }
+   }
+
+   private static <T> T await( Future<T> future ) throws IOException {
+      try {
+         return future.get();
+      } catch( InterruptedException e ) {
+         Thread.currentThread().interrupt();
+         throw new IOException( "Interrupted while moving downloaded files", e );
+      } catch( ExecutionException e ) {
+         if( e.getCause() instanceof IOException ) throw (IOException)e.getCause();
+         throw new IOException( e.getCause() );
+      }
+   }
+
+   /**
+      The files that one run moved and skipped
+   */
+   public static final class Report {
+      public int moved = 0;
+      public int duplicates = 0;
+      public int alreadyIngested = 0;
+      public final ArrayList<String> nameConflicts = new ArrayList<String>();
+      public final ArrayList<String> failed = new ArrayList<String>();
+
+      @Override
+      public String toString() {
+         StringBuilder text = new StringBuilder();
+         text.append( "\nMoved " ).append( moved ).append( " file(s). Skipped " ).append( duplicates )
+             .append( " duplicate(s) and " ).append( alreadyIngested ).append( " file(s) that were already moved before.\n" );
+         if( !nameConflicts.isEmpty() )
+            text.append( "Not moved, since a different file with the same name is already here: " )
+                .append( String.join( ", ", nameConflicts ) ).append( "\n" );
+         for( String failure : failed )
+            text.append( "Error! " ).append( failure ).append( "\n" );
+
+         return text.toString();
+      }
+   }
+}
@@ -0,0 +1,314 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+   FolderWatcher.java
+
+   Watches a folder and grades each student file as soon as it arrives or changes, for quizzes
+   where submissions come in a few at a time. Start it with
+
+      java Grader watch [FOLDER]
+
+   Student files (NAME_ASSIGNMENT.txt) are graded against the compiled key of their assignment, and
+   the results file is written next to them, as the menu would. A file is graded once no change to
+   it has been seen for DEBOUNCE_MILLIS, so that a file that is still being written is not graded
+   half-way. When a solution file in the folder or in the current folder changes, every student
+   file of its assignment is graded again. Student files without an up-to-date results file are
+   graded when watching starts.
+
+   After each file, one line shows its score, the time from its last change until it was graded,
+   and the running statistics of its assignment: the number of students, the mean score and the
+   problem answered correctly the least. Results files and these lines are written by a ResultWriter,
+   so the grading threads do not wait on the disk or on each other's printing
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see BatchGrader
+   @see AnswerKeyCache
+*/
+public class FolderWatcher {
+
+   /*A file is graded once it has not changed for this long*/
+   public static final long DEBOUNCE_MILLIS = 100;
+
+   private static final String[] EXCLUDED_FILES = {"Temp","Settings","Grade"};
+
+   private final File folder;
+   private final File solutionFolder = new File(".").getAbsoluteFile().toPath().normalize().toFile();
+   private final AnswerKeyCache keyCache;
+   private final GraderSettings.Source settingsSource;
+   private final ResultWriter writer;
+
+   private final ConcurrentHashMap<Path, Long> lastChange = new ConcurrentHashMap<Path, Long>();
+   private final ConcurrentHashMap<Path, Boolean> grading = new ConcurrentHashMap<Path, Boolean>();
+   private final ConcurrentHashMap<String, GradingSession> sessions = new ConcurrentHashMap<String, GradingSession>();
+   private final ConcurrentHashMap<String, AssignmentStats> stats = new ConcurrentHashMap<String, AssignmentStats>();
+
+   private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+   private final ExecutorService pool = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+   private WatchService watchService;
+
+   /**
+      @param folder The folder to watch. Solution files are looked for in this folder first, then
+                    in the current folder
+      @param keyCache The cache of compiled answer keys
+      @param settingsSource The grading options
+      @param writer Writes the results files and prints the line of each graded file
+   */
+   public FolderWatcher( File folder, AnswerKeyCache keyCache, GraderSettings.Source settingsSource, ResultWriter writer ) {
+      this.folder = folder.getAbsoluteFile().toPath().normalize().toFile();
+      this.keyCache = keyCache;
+      this.settingsSource = settingsSource;
+      this.writer = writer;
+   }
+
+   /**
+      Grade the student files that are not graded yet, then watch the folder until stop() is called
+
+      @throws IOException If the folder cannot be watched
+   */
+   public void run() throws IOException {
+      watchService = FileSystems.getDefault().newWatchService();
+      folder.toPath().register( watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY );
+      if( !solutionFolder.equals( folder ) )
+         solutionFolder.toPath().register( watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY );
+      gradeStaleFiles();
+
+      try {
+         while( true ) {
+            WatchKey key = watchService.take();
+            Path directory = (Path)key.watchable();
+            for( WatchEvent<?> event : key.pollEvents() ) {
+               if( event.kind() == StandardWatchEventKinds.OVERFLOW ) {
+                  gradeStaleFiles(); //Events were lost, so look at the whole folder again
+                  continue;
+               }
+               Path path = directory.resolve( (Path)event.context() );
+               if( directory.equals( folder.toPath() ) || isSolutionFile( path ) ) changed( path );
+            }
+            if( !key.reset() ) break;
+         }
+      } catch( InterruptedException | ClosedWatchServiceException e ) {
+         //Stopped
+      } finally {
+         timer.shutdownNow();
+         pool.shutdown();
+      }
+   }
+
+   /**
+      Stop watching
+   */
+   public void stop() {
+      try {
+         if( watchService != null ) watchService.close();
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
+   }
+
+   /**
+      Note a change to a file, and check it again once it has had time to settle
+
+      @param path The file that was created or changed
+   */
+   private void changed( Path path ) {
+      String fileName = path.getFileName().toString();
+      if( !fileName.endsWith(".txt") ) return;
+      for( String token : EXCLUDED_FILES )
+         if( fileName.contains( token ) ) return;
+
+      lastChange.put( path, System.nanoTime() );
+      timer.schedule( () -> settle( path ), DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS );
+   }
+
+   /**
+      Grade a file if it has not changed since it was last seen. If it has, the check that was
+      scheduled for the newer change grades it
+
+      @param path The file
+   */
+   private void settle( Path path ) {
+      Long changedAt = lastChange.get( path );
+      if( changedAt == null || System.nanoTime() - changedAt < TimeUnit.MILLISECONDS.toNanos( DEBOUNCE_MILLIS ) ) return;
+
+      //A file that is still being graded is checked again when the grading finishes
+      if( grading.putIfAbsent( path, Boolean.TRUE ) != null ) {
+         timer.schedule( () -> settle( path ), DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS );
+         return;
+      }
+      if( !lastChange.remove( path, changedAt ) ) {
+         grading.remove( path );
+         return;
+      }
+
+      pool.submit( () -> {
+         try {
+            File file = path.toFile();
+            if( isSolutionFile( path ) ) regradeAssignment( file );
+            else if( file.isFile() ) grade( file, changedAt );
+         } catch( RuntimeException e ) {
+            writer.print( "Error! Could not grade " + path.getFileName() + ": " + e + "\n" );
+         } finally {
+            grading.remove( path );
+         }
+      } );
+   }
+
+   private static boolean isSolutionFile( Path path ) {
+      return path.getFileName().toString().toLowerCase().startsWith("solution");
+   }
+
+   /**
+      Grade every student file in the folder whose results file is missing or older than it
+   */
+   private void gradeStaleFiles() {
+      for( File file : Grader.getTextFiles( folder, new String[]{"Temp","Settings","Solution","Grade"} ) ) {
+         File resultsFile = new File( folder, file.getName().substring( 0, file.getName().indexOf(".") ) + "_Grade.txt" );
+         if( !resultsFile.exists() || resultsFile.lastModified() < file.lastModified() )
+            changed( file.toPath() );
+      }
+   }
+
+   /**
+      Grade every student file of the assignment of a solution file again, since it has changed
+
+      @param solutionFile The solution file
+   */
+   private void regradeAssignment( File solutionFile ) {
+      String assignment = AnswerKeyCache.getAssignmentName( solutionFile.getName() );
+      List<File> studentFiles = BatchGrader.groupByAssignment( folder ).get( assignment );
+      if( studentFiles == null ) return;
+
+      writer.print( solutionFile.getName() + " changed. Grading " + studentFiles.size() + " student files again\n" );
+      for( File studentFile : studentFiles )
+         changed( studentFile.toPath() );
+   }
+
+   /**
+      Grade one student file, hand its results file to the writer, and add its score to the statistics
+
+      @param studentFile The student file
+      @param changedAt When the file was last changed, from System.nanoTime()
+   */
+   private void grade( File studentFile, long changedAt ) {
+      String assignment = BatchGrader.getAssignment( studentFile.getName() );
+      if( assignment == null ) return;
+
+      GradingSession session = getSession( assignment );
+      if( session == null ) {
+         writer.print( studentFile.getName() + ": no solution file found for " + assignment + "\n" );
+         return;
+      }
+
+      GradingSession.Result result = Grader.gradeStudentFile( studentFile, session );
+      String errorText = Grader.getErrorText( result, studentFile.getName(), "Solutions_" + assignment + ".txt" );
+      if( errorText != null ) {
+         writer.print( errorText );
+         return;
+      }
+      if( session.getSettings().createResultsFile )
+         writer.writeResultsFile( studentFile, result.toResultsText() );
+      long millis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - changedAt );
+
+      AssignmentStats assignmentStats = stats.computeIfAbsent( assignment.toLowerCase(), name -> new AssignmentStats() );
+      String summary = assignmentStats.update( studentFile.getName(), result );
+      StringBuilder line = new StringBuilder( String.format( "%s: %s / %s in %d ms. %s: %s%n", studentFile.getName(),
+                                                             result.totalPoints, result.maxPoints, millis, assignment, summary ) );
+      for( String failure : writer.takeFailures() )
+         line.append( "Error! Could not write " ).append( failure ).append( "\n" );
+      writer.print( line.toString() );
+   }
+
+   /**
+      Get the grading session of an assignment, starting a new one if its solution file or the
+      grading options have changed
+
+      @param assignment The name of the assignment
+      @return GradingSession The session, or null if there is no solution file
+   */
+   private GradingSession getSession( String assignment ) {
+      File solutionFile = AnswerKeyCache.findSolutionFile( folder, assignment );
+      if( solutionFile == null ) solutionFile = AnswerKeyCache.findSolutionFile( solutionFolder, assignment );
+      if( solutionFile == null ) return null;
+
+      AnswerKey key;
+      try {
+         key = keyCache.get( solutionFile );
+      } catch( IOException e ) {
+         e.printStackTrace();
+         return null;
+      }
+
+      GraderSettings settings = settingsSource.current();
+      String name = assignment.toLowerCase();
+      GradingSession session = sessions.get( name );
+      if( session == null || session.getKey() != key || session.getSettings() != settings ) {
+         session = new GradingSession( settings, key, true );
+         sessions.put( name, session );
+      }
+
+      return session;
+   }
+
+   /**
+      The running statistics of one assignment. Grading a student again replaces their old score
+   */
+   private static final class AssignmentStats {
+      private final TreeMap<String, GradingSession.Result> results = new TreeMap<String, GradingSession.Result>();
+      private final TreeMap<String, int[]> problems = new TreeMap<String, int[]>(); //Problem -> correct, answered
+      private double totalPercent = 0.0;
+
+      /**
+         Replace the result of a student and update the statistics
+
+         @param studentFileName The name of the student file
+         @param result The new result
+         @return String The statistics, eg. "12 students, mean 81.5%, fewest correct: #4 (42%)"
+      */
+      synchronized String update( String studentFileName, GradingSession.Result result ) {
+         GradingSession.Result old = results.put( studentFileName, result );
+         if( old != null ) count( old, -1 );
+         count( result, 1 );
+
+         String hardest = null;
+         double hardestRate = 2.0;
+         for( Map.Entry<String, int[]> entry : problems.entrySet() ) {
+            int[] counts = entry.getValue();
+            if( counts[1] == 0 ) continue;
+            double rate = (double)counts[0] / counts[1];
+            if( rate < hardestRate ) {
+               hardestRate = rate;
+               hardest = entry.getKey();
+            }
+         }
+
+         return String.format( "%d students, mean %.1f%%", results.size(), totalPercent / results.size() ) +
+                (hardest == null ? "" : String.format( ", fewest correct: #%s (%.0f%%)", hardest, 100.0 * hardestRate ));
+      }
+
+      private void count( GradingSession.Result result, int sign ) {
+         totalPercent += sign * (result.maxPoints == 0.0 ? 100.0 : 100.0 * result.totalPoints / result.maxPoints);
+         for( GradingSession.Verdict verdict : result.verdicts ) {
+            int[] counts = problems.computeIfAbsent( verdict.problemId, id -> new int[2] );
+            if( verdict.isCorrect() ) counts[0] += sign;
+            counts[1] += sign;
+         }
+      }
+   }
+}
@@ -7,11 +7,18 @@ import java.io.IOException;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.nio.file.*;
 import java.nio.file.attribute.*;
+import java.nio.charset.Charset;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 //import java.nio.file.Files;
 //import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.regex.Pattern;
@@ -36,22 +43,22 @@ public class Grader {
 
    private static final String GRADER_SETTINGS_FILE_NAME = "Grader_Settings.txt";
    
-   /*Grader Settings -- @@NOTE: Anytime a setting is added, it needs to be added in the setGraderSettings()
-        method, the Grader_Settings.txt file, and the global variables below*/
-   private static boolean spacesMatter               = false;
-   private static boolean useAutoAltSolutions        = true;
-   private static int     defaultPointValue          = 1;
-   private static boolean manuallyEnterSolutions     = false;
-   private static boolean listOrderMatters           = true;
-   private static boolean convertFractionsToDecimals = true;
-   private static boolean createResultsFile          = true;
-   private static boolean includeAlgebraicAlternates = true;
+   /*Compiled solution files, kept for as long as the program runs*/
+   private static final AnswerKeyCache keyCache = new AnswerKeyCache( AnswerKeyCache.DEFAULT_MAX_BYTES );
+   
+   /*Grader Settings -- @@NOTE: Anytime a setting is added, it needs to be added in GraderSettings
+        and the Grader_Settings.txt file. The settings file is only read again when it changes*/
+   private static final GraderSettings.Source settingsSource = new GraderSettings.Source( new File( GRADER_SETTINGS_FILE_NAME ) );
+   private static GraderSettings settings = GraderSettings.DEFAULTS;
+   
+   /*While a command runs, console text goes through one writer thread, shared with the grading threads*/
+   private static volatile ResultWriter console = null;
 
    /**
       Run the menu options
       
       @see printMenu()
-      @see setGraderSettings()
+      @see GraderSettings
       
       @see gradeAllTextFiles()
       @see gradeTextFile()
@@ -64,13 +71,19 @@ public class Grader {
       @see editAllFiles()
       @see editResponseFile()
       @see printFile()
+      @see runCommand( String[] args )
    */
    public static void main( String[] args ) {
 
+      if( args.length > 0 ) {
+         runCommand( args );
+         return;
+      }
+
       String response = "";
       printMenu( false );
       do {
-         setGraderSettings();
+         settings = settingsSource.current();
          
          response = scanner.nextLine().toLowerCase();
          char option = response.charAt(0);
@@ -100,6 +113,194 @@ public class Grader {
       } while( !response.equals("q") && !response.contains("quit") );
    }
    
+   /**
+      Run Grader without the menu, for use by other programs. The commands are:
+      
+         serve [PORT] [--all-interfaces]
+                        Run the HTTP grading service, for this computer only unless --all-interfaces
+                        is given. See GradingServer
+         batch [THREADS] [RESULTS_FILE] [--quiet] [--log LOG_FILE] [--fresh]
+                        Grade every assignment in the folder that has a solution file, with one pool of
+                        threads (one per processor by default), then summarize them. The results go to
+                        a _Grade.txt file per student, or all to one .jsonl, .csv or .zip results file.
+                        With --quiet, one progress line is shown instead of the results of each student,
+                        which go to the log file instead, if one is given. A batch that was stopped carries
+                        on where it left off, unless --fresh is given. See BatchGrader, ResultsOutput and
+                        BatchJournal
+         zip EXPORT.zip [RESULTS_FILE]
+                        Grade every assignment in a ZIP archive without extracting it, and write the
+                        results to one .jsonl, .csv or .zip file (EXPORT_Grades.zip by default). See BatchGrader
+         csv FORM.csv ASSIGNMENT [SCORES.csv]
+                        Grade a wide CSV or TSV file with one row per student and one column per problem,
+                        such as a form export, and write the scores of each problem to a CSV file of the
+                        same shape (FORM_Scores.csv by default). See CsvGrader
+         filter ASSIGNMENT...
+                        Read JSON lines of submissions from standard input and write a JSON line of verdicts
+                        for each one to standard output as soon as it is graded. Each ASSIGNMENT is an
+                        assignment name or a solution file. See JsonLinesFilter
+         daemon         Keep running in the background and take commands from GraderClient. See GraderDaemon
+         watch [FOLDER] Grade each student file in the folder (the current folder by default) as soon as it
+                        arrives or changes. See FolderWatcher
+         profile ASSIGNMENT [TOP]
+                        Grade all student files of an assignment, then list the TOP problems (10 by default)
+                        that took the most time to match. See KeyProfiler
+         lint ASSIGNMENT
+                        List the alternate solutions of a solution file that can never decide a grade,
+                        and are left out when it is compiled. See AnswerKey
+      
+      @param args The command and its arguments
+   */
+   private static void runCommand( String[] args ) {
+      String command = args[0].toLowerCase();
+      String[] commandArgs = Arrays.copyOfRange( args, 1, args.length );
+      console = new ResultWriter( System.out );
+      
+      try {
+         if( command.equals("serve") ) {
+            runJava21Command( "GradingServer", commandArgs );
+         } else if( command.equals("daemon") ) {
+            runJava21Command( "GraderDaemon", commandArgs );
+         } else if( command.equals("batch") ) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            String resultsFile = null, logFile = null;
+            boolean quiet = false, fresh = false;
+            for( int i = 0; i < commandArgs.length; i++ ) {
+               String arg = commandArgs[i];
+               if( arg.equals("--quiet") || arg.equals("-q") )       quiet = true;
+               else if( arg.equals("--fresh") )                      fresh = true;
+               else if( arg.equals("--log") && i + 1 < commandArgs.length ) logFile = commandArgs[++i];
+               else if( arg.matches("\\d+") )                        threads = Integer.parseInt( arg );
+               else                                                  resultsFile = arg;
+            }
+            
+            BatchGrader batch = new BatchGrader( new File("."), settingsSource.current(), threads, console );
+            batch.setResume( !fresh );
+            ResultsOutput output = resultsFile == null ? null : ResultsOutput.open( new File( resultsFile ) );
+            if( !quiet ) {
+               SOP( batch.gradeAll( output ) );
+            } else if( logFile == null ) {
+               batch.setQuiet( null );
+               SOP( batch.gradeAll( output ) );
+            } else {
+               try( PrintStream log = new PrintStream( new BufferedOutputStream( new FileOutputStream( logFile ), 256 * 1024 ),
+                                                       false, Charset.defaultCharset().name() ) ) {
+                  batch.setQuiet( log );
+                  SOP( batch.gradeAll( output ) );
+                  SOPln("Details written to " + logFile);
+               }
+            }
+         } else if( command.equals("zip") && commandArgs.length > 0 ) {
+            File archive = new File( commandArgs[0] );
+            String baseName = archive.getName().replaceFirst("(?i)\\.zip$", "");
+            File resultsFile = commandArgs.length > 1 ? new File( commandArgs[1] )
+                                                      : new File( archive.getAbsoluteFile().getParentFile(), baseName + "_Grades.zip" );
+            BatchGrader batch = new BatchGrader( new File("."), settingsSource.current(), Runtime.getRuntime().availableProcessors(), console );
+            SOP( batch.gradeArchive( archive, ResultsOutput.open( resultsFile ) ) );
+         } else if( command.equals("csv") && commandArgs.length > 1 ) {
+            File solutionFile = AnswerKeyCache.findSolutionFile( new File("."), commandArgs[1] );
+            if( solutionFile == null ) {
+               SOPln("\nNo solution file found for " + commandArgs[1] + ".\n");
+               return;
+            }
+            
+            File formFile = new File( commandArgs[0] );
+            File scoresFile = commandArgs.length > 2 ? new File( commandArgs[2] ) : CsvGrader.getScoresFile( formFile );
+            GradingSession session = createSession( solutionFile, settingsSource.current() );
+            if( session == null ) return;
+            SOP( new CsvGrader( session, solutionFile ).grade( formFile, scoresFile ) );
+         } else if( command.equals("filter") && commandArgs.length > 0 ) {
+            JsonLinesFilter filter = new JsonLinesFilter( console, Runtime.getRuntime().availableProcessors() );
+            GraderSettings current = settingsSource.current();
+            for( String arg : commandArgs ) {
+               File solutionFile = new File( arg ).isFile() ? new File( arg ) : AnswerKeyCache.findSolutionFile( new File("."), arg );
+               if( solutionFile == null ) {
+                  System.err.println("No solution file found for " + arg + ".");
+                  return;
+               }
+               filter.addAssignment( AnswerKeyCache.getAssignmentName( solutionFile.getName() ), solutionFile,
+                                     new GradingSession( current, keyCache.get( solutionFile ), true ) );
+            }
+            
+            filter.run( System.in );
+            filter.saveAlternateOrders();
+         } else if( command.equals("watch") ) {
+            File folder = new File( commandArgs.length > 0 ? commandArgs[0] : "." );
+            SOPln("Watching " + folder.getAbsolutePath() + " for student files. Press Ctrl+C to stop.");
+            new FolderWatcher( folder, keyCache, settingsSource, console ).run();
+         } else if( command.equals("profile") && commandArgs.length > 0 ) {
+            File solutionFile = AnswerKeyCache.findSolutionFile( new File("."), commandArgs[0] );
+            if( solutionFile == null ) {
+               SOPln("\nNo solution file found for " + commandArgs[0] + ".\n");
+               return;
+            }
+            
+            int top = commandArgs.length > 1 ? Integer.parseInt( commandArgs[1] ) : 10;
+            KeyProfiler profiler = new KeyProfiler( keyCache.get( solutionFile ) );
+            GradingSession session = new GradingSession( settingsSource.current(), profiler );
+            
+            //Grade through the session only, so that profiling does not replace any results files
+            int graded = 0;
+            for( File studentFile : findStudentFiles( new File("."), commandArgs[0] ) ) {
+               if( !checkIfFilesAreCompatible( studentFile.getName(), solutionFile.getName() ) ) continue;
+               gradeStudentFile( studentFile, session );
+               graded++;
+            }
+            SOPln("\nProfiled " + graded + " student file(s) of " + commandArgs[0] + ". No results files were written.");
+            SOP( profiler.getReport( top ) );
+         } else if( command.equals("lint") && commandArgs.length > 0 ) {
+            File solutionFile = AnswerKeyCache.findSolutionFile( new File("."), commandArgs[0] );
+            if( solutionFile == null ) {
+               SOPln("\nNo solution file found for " + commandArgs[0] + ".\n");
+               return;
+            }
+            
+            List<String> redundant = AnswerKey.findRedundantAlternates( Files.readAllLines( solutionFile.toPath() ) );
+            SOPln("\n" + redundant.size() + " alternate solution(s) in " + solutionFile.getName() + " can never decide a grade:\n");
+            for( String line : redundant )
+               SOPln( line );
+         } else {
+            SOPln("Unknown command: " + args[0] + "\nRun Grader without any arguments to use the menu.");
+         }
+      } catch( IOException e ) {
+         e.printStackTrace();
+      } catch( IllegalArgumentException e ) {
+         SOPln("Error! " + e.getMessage());
+      } finally {
+         console.close();
+         console = null;
+      }
+   }
+   
+   /**
+      Run the serve or daemon command. GradingServer and GraderDaemon need Java 21 or later, so they
+      are loaded by name, and the rest of Grader can still be compiled and run with Java 17
+      
+      @param className GradingServer or GraderDaemon
+      @param commandArgs The arguments of the command
+   */
+   private static void runJava21Command( String className, String[] commandArgs ) throws IOException {
+      Method run;
+      try {
+         run = Class.forName( className ).getMethod( "runCommand", AnswerKeyCache.class, String[].class, ResultWriter.class );
+      } catch( ClassNotFoundException | NoSuchMethodException | LinkageError e ) {
+         SOPln("Error! " + className + " needs to be compiled and run with Java 21 or later. This is Java " +
+               System.getProperty("java.version") + ".");
+         return;
+      }
+      
+      try {
+         run.invoke( null, keyCache, commandArgs, console );
+      } catch( InvocationTargetException e ) {
+         Throwable cause = e.getCause();
+         if( cause instanceof IOException )      throw (IOException)cause;
+         if( cause instanceof RuntimeException ) throw (RuntimeException)cause;
+         if( cause instanceof Error )            throw (Error)cause;
+         throw new IllegalStateException( cause );
+      } catch( IllegalAccessException e ) {
+         throw new IllegalStateException( e );
+      }
+   }
+   
    /**
       Grade all student response text files by comparing the answers in each
       to the solution text file. The files are graded according to the grading
@@ -110,7 +311,7 @@ public class Grader {
       for that student, along with any automated responses based on the incorrect value
       for each question (these are options and are set within the solutions file).
       
-      @see gradeTextFile( File file )
+      @see gradeTextFile( File studentFile, File solutionFile, GradingSession session )
    */
    public static void gradeAllTextFiles() {
       SOPln("\nWhat group of files do you want to edit?\n" +
@@ -118,15 +319,51 @@ public class Grader {
             "\"HW6\" or \"Quiz2\"\n");
       String inclusionToken = scanner.nextLine();
    
-      File[] studentFiles = getTextFiles( new String[]{"Temp","Settings","Solution"} );
       File solutionFile = getSolutionFile();
+      if( solutionFile == null ) return;
       
       //@@DEBUG
       //SOPln("\nThe solution file found is: " + solutionFile.getName() + "\n");
       
-      for( File studentFile : studentFiles )
-         if( studentFile.getName().toLowerCase().contains( removeWhitespace( inclusionToken.toLowerCase() ) ) )
-            gradeTextFile( studentFile, solutionFile );
+      GradingSession session = createSession( solutionFile, settings );
+      if( session == null ) return;
+      
+      SOP( gradeAssignment( inclusionToken, solutionFile, session ) );
+   }
+   
+   /**
+      Grade all student response text files of an assignment, without any prompts
+      
+      @param inclusionToken The identifying name of the assignment, eg. HW1
+      @param solutionFile The solution text file for the assignment
+      @param session The grading session for the solution file
+      @return String The results of every student file, in the order that they were graded
+      @see gradeTextFile( File studentFile, File solutionFile, GradingSession session )
+   */
+   static String gradeAssignment( String inclusionToken, File solutionFile, GradingSession session ) {
+      StringBuilder results = new StringBuilder();
+      for( File studentFile : findStudentFiles( new File("."), inclusionToken ) )
+         results.append( gradeTextFile( studentFile, solutionFile, session ) );
+      if( AlternateOrder.ENABLED ) session.getKey().alternateOrder().save( solutionFile );
+      
+      return results.toString();
+   }
+   
+   /**
+      Find the student response text files of an assignment
+      
+      @param directory The folder to look in
+      @param inclusionToken The identifying name of the assignment, eg. HW1
+      @return ArrayList<File> The student files, in the order that they are graded
+   */
+   static ArrayList<File> findStudentFiles( File directory, String inclusionToken ) {
+      ArrayList<File> studentFiles = new ArrayList<File>();
+      String token = removeWhitespace( inclusionToken.toLowerCase() );
+      for( File file : getTextFiles( directory, new String[]{"Temp","Settings","Solution","Grade"} ) )
+         if( file.getName().toLowerCase().contains( token ) )
+            studentFiles.add( file );
+      
+      return studentFiles;
    }
    
    /**
@@ -158,16 +395,29 @@ public class Grader {
       @return File[] The list of text files in the current directory
    */
    private static File[] getTextFiles( String[] exclusionList ) {
-      File dir = new File(".");
-      File[] filesList = dir.listFiles();
+      return getTextFiles( new File("."), exclusionList );
+   }
+   
+   /**
+      Get the list of text files in a folder, excluding any files that contain a token from the exclusion list
+      
+      @param directory The folder to look in
+      @param exclusionList The list of tokens to check against the names of the Files for the purposes of
+                           excluding them from the returned list
+      @return File[] The list of text files in the folder
+   */
+   static File[] getTextFiles( File directory, String[] exclusionList ) {
+      File[] filesList = directory.listFiles();
       ArrayList<File> newFileList = new ArrayList<File>();
       
       for( File file : filesList ) {
          if( file.isFile() ) {
             boolean willInclude = true;
-            if( file.toString().contains("txt") && !file.toString().contains("Grader_Settings.txt") ) {
+            //Skip the temporary files of results files that are being written, or that a stopped run left behind
+            if( file.getName().contains("txt") && !file.getName().contains("Grader_Settings.txt") &&
+                !file.getName().endsWith(".tmp") ) {
                for( int i = 0; i < exclusionList.length; i++ ) {
-                  willInclude &= !file.toString().toLowerCase().contains( exclusionList[i].toLowerCase() );
+                  willInclude &= !file.getName().toLowerCase().contains( exclusionList[i].toLowerCase() );
                }
             } else {
                willInclude = false;
@@ -300,7 +550,7 @@ public class Grader {
       do {
          printFileListByName( fileList );
          SOPln("\nWhich file?");
-         String response = new Scanner(System.in).nextLine().toLowerCase();
+         String response = scanner.nextLine().toLowerCase();
          
          //If enter number index
          boolean invalidIndex = false;
@@ -367,13 +617,35 @@ public class Grader {
       
       @see getFileByName()
       @see getSolutionFile()
-      @see gradeTextFile( File studentFile, File solutionFile )
+      @see gradeTextFile( File studentFile, File solutionFile, GradingSession session )
    */
    public static void gradeTextFile() {
       File studentFile = getFileByName();
       File solutionFile = getSolutionFile();
+      if( studentFile == null || solutionFile == null ) return;
       
-      gradeTextFile( studentFile, solutionFile );
+      GradingSession session = createSession( solutionFile, settings );
+      if( session == null ) return;
+      
+      SOP( gradeTextFile( studentFile, solutionFile, session ) );
+   }
+   
+   /**
+      Create a grading session for a solution file. The compiled solution file is taken from
+      the cache of compiled keys
+      
+      @param solutionFile The solution text file
+      @param settings The grading options to use
+      @return GradingSession The session, or null if the solution file could not be read
+   */
+   static GradingSession createSession( File solutionFile, GraderSettings settings ) {
+      try {
+         return new GradingSession( settings, keyCache.get( solutionFile ), true );
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
+      
+      return null;
    }
    
    /**
@@ -395,28 +667,24 @@ public class Grader {
       @param studentFile The student text file to be graded. The name of the file should follow the format of "NAME_ASSIGNMENT.txt"
       @param solutionFile The solution text file that contains the correct answers. The name of the file should follow the
                           format of "Solutions_ASSIGNMENT.txt"
+      @param session The grading session for the solution file, which has the compiled solution file
+                     and the grading options
+      @return String The text to show for this file: the results, or the reason the file could not be graded
       @see gradeAllTextFiles()
       @see checkIfFilesAreCompatible( String studentFileName, String solutionFileName )
    */
-   private static void gradeTextFile( File studentFile, File solutionFile ) {
+   static String gradeTextFile( File studentFile, File solutionFile, GradingSession session ) {
       String studentFileName = studentFile.getName();
-      String studentName = studentFileName.substring( 0, studentFileName.indexOf("_") );
       String solutionFileName = solutionFile.getName();
       boolean namesMatch = checkIfFilesAreCompatible( studentFileName, solutionFileName );
       
       if( !namesMatch ) {
-         SOPln("The files " + studentFileName + " and " + solutionFileName + " are not compatible for grading.\n" +
-               "Each file must be a .txt file and have the same assignment name. The solution file must\n" +
-               "begin with the word \"solution\" (caps do not matter). The student file must\n" +
-               "begin with their name.");
-         return;
+         return "The files " + studentFileName + " and " + solutionFileName + " are not compatible for grading.\n" +
+                "Each file must be a .txt file and have the same assignment name. The solution file must\n" +
+                "begin with the word \"solution\" (caps do not matter). The student file must\n" +
+                "begin with their name.\n";
       }
       
-      double totalPoints, maxPoints;
-      totalPoints = maxPoints = 0.0;
-      Scanner studentScanner = getScanner( studentFile );
-      Scanner solutionScanner = getScanner( solutionFile );
-      
       /*Student file format examples:           Solution file format examples:
          1. 23                                   1. 23 & 23.0 & 92;Multiplied by 2 instead of dividing;0.0 & 17;Subtracted instead of added;0.5
          2. Rectangle                            2. Rectangle & Rect & Parallelogram & Paralelogram & Square; Can't be a square because side C and side B are longer than A and D; 0.5
@@ -424,298 +692,183 @@ public class Grader {
          4. (4, 5)                               4. (4, 5) & (4,5) & 4, 5 & 4,5 & x = 4, y = 5 & 5, 4 | (5, 4) ; Values are switched! ; 0.5 & (-4, -5) | -4, -5 ; x and y must be positive in order to make the left side equal to zero ; 0.5
          5. 342.56                               5. 342.57 ; Range 1.0 & 342.57 ; Range 1.0 to 5.0 ; 0.5 ; Didn't multiply by acceleration?
       */
+      GradingSession.Result result = gradeStudentFile( studentFile, session );
+      String errorText = getErrorText( result, studentFileName, solutionFileName );
+      if( errorText != null ) return errorText;
       
-      String resultsFileText = "";
-      String printName = capFirstLetter( studentName ) + ":";
-      resultsFileText += printName + "\n";
-      SOPln( printName );
-      
-      int lineNumber = 1;
-      ArrayList<String> responseLines = new ArrayList<String>();
-      while( studentScanner.hasNextLine() && solutionScanner.hasNextLine() ) {
-         //Get relevant text
-         String studentLine = studentScanner.nextLine();
-         String originalLine = studentLine;
-         String solutionLine = solutionScanner.nextLine();
-         studentLine = studentLine.substring( studentLine.indexOf(".") + 1, studentLine.length() ).trim();
-         solutionLine = solutionLine.substring( solutionLine.indexOf(".") + 1, solutionLine.length() ).trim();
-         String problemNumber = originalLine.substring( 0, originalLine.indexOf(".") );
-         
-         //Handle if total student problems and total solution problems differ
-         if( studentLine.isEmpty() ) {
-            maxPoints += 1.0;
-            continue;
-         }
-         if( solutionLine.isEmpty() ) {
-            SOPln("\nError! The number of solutions for the assignment " + solutionFileName + " is less than the\n" +
-                  "number of answers given in the student file " + studentFileName + ".\n" +
-                  "\nPlease fix this before grading this file.\n");
-            return;
-         }
-         
-         //Formatting
-         studentLine = studentLine.toLowerCase();
-         studentLine = checkAndConvertToDecimal( studentLine );
-         solutionLine = solutionLine.toLowerCase();
-         if( !spacesMatter ) studentLine = removeWhitespace( studentLine );
-         
-         //Save info for response file
-         String responseLine = problemNumber + ". ";
-         String autoFeedback = "";
-         
-         String[] solutionParts = solutionLine.split("&");
-         
-         String firstSolution = findFirstCorrectSolution( solutionParts );
-         boolean correctAnswer = false;
-         boolean hitCorrectOrPartialAnswer = false;
-         for( int i = 0; i < solutionParts.length; i++ ) {
-
-            String[] solutionSpecs = solutionParts[i].trim().split(";");
-         
-            //No specs
-            if( solutionSpecs.length == 1 && studentLine.equals( solutionParts[i] ) ) {
-               correctAnswer = true;
-               break;
-            }
-            
-            //Handle specs
-            double  minRange             = 0.0;
-            double  maxRange             = 0.0;
-            double  partialCreditRatio   = 1.0;
-            double  studentLineValue     = 0.0;
-            int     studentLineValueInt  = 0;
-            double  solutionLineValue    = 0.0;
-            int     solutionLineValueInt = 0;
-            boolean doubleFail           = false;
-            boolean intFail              = false;
-            boolean doubleFailSolution   = false;
-            boolean intFailSolution      = false;
-            String  solutionValue        = "";
-            
-            //Parse student answer values
-            try {
-               studentLineValue = Double.parseDouble( solutionSpecs[0] );
-            } catch( NumberFormatException e ) {
-               doubleFail = true;
-            }
-            if( doubleFail ) {
-               try {
-                  studentLineValueInt = Integer.parseInt( solutionSpecs[0] );
-               } catch( NumberFormatException e ) {
-                  intFail = true;
-               }
-            }
-            
-            //Run through each spec and set settings
-            for( int j = 0; j < solutionSpecs.length; j++ ) {
-               doubleFailSolution = intFailSolution = false;
-            
-               solutionSpecs[j] = solutionSpecs[j].trim();
-               
-               //Check for range tag and set range
-               if( solutionSpecs[j].contains("range") ) {
-                  String[] rangeSpecs = solutionSpecs[j].split(" ");
-                  if( solutionSpecs[j].contains("to") ) {
-                     //Set min range
-                     try {
-                        minRange = Double.parseDouble( rangeSpecs[1] );
-                     } catch( NumberFormatException e ) {
-                        try {
-                           minRange = Integer.parseInt( rangeSpecs[1] );
-                        } catch( NumberFormatException f ) {
-                           SOPln("\nThis line should not be reached! Search tag: @471");
-                           return;
-                        }
-                     }
-                     //Set max range
-                     try {
-                        maxRange = Double.parseDouble( rangeSpecs[3] );
-                     } catch( NumberFormatException e ) {
-                        try {
-                           maxRange = Integer.parseInt( rangeSpecs[3] );
-                        } catch( NumberFormatException f ) {
-                           SOPln("\nThis line should not be reached! Search tag: @483");
-                           return;
-                        }
-                     }
-                  } else { //no min range
-                     try {
-                        maxRange = Double.parseDouble( rangeSpecs[1] );
-                     } catch( NumberFormatException e ) {
-                        try {
-                           maxRange = Integer.parseInt( rangeSpecs[1] );
-                        } catch( NumberFormatException f ) {
-                           SOPln("\nThis line should not be reached! Search tag: @491");
-                           return;
-                        }
-                     }
-                  }
-                  
-                  continue;
-               }
-               
-               //Check for solution value and partial credit ratio
-               if( j == 0 || isNumeric( solutionSpecs[j] ) ) {
-                  //Parse solution values
-                  double tempDouble = 0.0;
-                  int tempInt = 0;
-                  try {
-                     if( j == 0 ) solutionLineValue = Double.parseDouble( solutionSpecs[j] );
-                     else         tempDouble = Double.parseDouble( solutionSpecs[j] );
-                  } catch( NumberFormatException e ) {
-                     doubleFailSolution = true;
-                     try {
-                        if( j == 0 ) solutionLineValueInt = Integer.parseInt( solutionSpecs[j] );
-                        else         tempInt = Integer.parseInt( solutionSpecs[j] );
-                     } catch( NumberFormatException f ) {
-                        intFailSolution = true;
-                     }
-                  }
-                  
-                  boolean isPartialCreditValue = false;
-                  
-                  //Double value
-                  if( !doubleFailSolution && j != 0 )
-                     isPartialCreditValue = tempDouble < 1.0 && tempDouble > -1.0;
-                  //Int value
-                  else if( !intFailSolution && j != 0 )
-                     isPartialCreditValue = tempInt < 1 && tempInt > -1;
-                  
-                  if( isPartialCreditValue )
-                     partialCreditRatio = Double.parseDouble( solutionSpecs[j] );
-                  else
-                     solutionValue = solutionSpecs[j]; //This is a String
-                     
-                  continue;
-               }
-               
-               //Check for automated response
-               if( !isNumeric( solutionSpecs[j] ) ) {
-                  autoFeedback = solutionSpecs[j];
-                  continue;
-               } else {
-                  SOPln("Error! Formatting issue within solution file '" + solutionFileName + "'.\n" +
-                        "See line #" + lineNumber + ". One or more solution tags does not follow the format of\n" +
-                        "Problem#. Solution Value ; Range NUMBER ; Range NUMBER to NUMBER ; PARTIAL CREDIT RATIO\n" +
-                        "where the range and partial credit tags are optional. For solution tags that do not have\n" +
-                        "the range or partial credit tags, there should be no semicolons present. In that case, the\n" +
-                        "solution should look like the following:\n" +
-                        "Problem#. Solution Value\n\nPlease edit this line and then run this program again.\n");
-                  return;
-               }
-            }//end for loop for looking through specs seperated by semicolons
-            
-            /*Check correctness based on solution tags*/
-            
-            //String response
-            if( intFail || intFailSolution ) {
-               if( studentLine.equals( solutionValue ) ) {
-                  totalPoints += defaultPointValue * partialCreditRatio;
-                  if( partialCreditRatio < 1.0 )
-                     responseLine += "XXX Partial Credit: " + (defaultPointValue * partialCreditRatio) + "/" + defaultPointValue + ". Student answer: " + studentLine + ", Solution: " + firstSolution.trim()/*(!doubleFailSolution ? solutionLineValue : solutionLineValueInt)*/ + ". " + autoFeedback;
-                  else
-                     responseLine += "Correct";
-                  
-                  hitCorrectOrPartialAnswer = true;
-                  break;
-               //Check to see if solutions are correct, but are just rearranged in different orders.
-               //Note that this requires the 'listOrderMatters' setting to be set to false
-               } else if( !listOrderMatters && studentLine.contains(",") ) {
-                  String[] studentList = studentLine.replaceAll("\\s+","").split(",");
-                  String[] solutionList = solutionValue.replaceAll("\\s+","").split(",");
-                  if( studentList.length == solutionList.length && studentList.length != 0 && solutionList.length != 0 ) {
-                     boolean passed = true;
-                     for( int j = 0; j < solutionList.length; j++ ) {
-                        if( !solutionLine.contains( studentList[j] ) )
-                           passed = false;
-                     }
-                     
-                     //The lists are equal, but possibly rearranged differently
-                     if( passed ) {
-                        totalPoints += defaultPointValue * partialCreditRatio;
-                        if( partialCreditRatio < 1.0 )
-                           responseLine += "XXX Partial Credit: " + (defaultPointValue * partialCreditRatio) + "/" + defaultPointValue + ". Student answer: " + studentLine + ", Solution: " + firstSolution.trim()/*(!doubleFailSolution ? solutionLineValue : solutionLineValueInt)*/ + ". " + autoFeedback;
-                        else
-                           responseLine += "Correct";
-                        
-                        hitCorrectOrPartialAnswer = true;
-                        break;
-                     }
-                  }
-               }
-            } else { //For int or double values
-               if( Math.abs( studentLineValue - solutionLineValue ) <= maxRange && Math.abs( studentLineValue - solutionLineValue ) >= minRange ) {
-                  totalPoints += defaultPointValue * partialCreditRatio;
-                  if( partialCreditRatio < 1.0 )
-                     responseLine += "XXX Partial Credit: " + (defaultPointValue * partialCreditRatio) + "/" + defaultPointValue + ". Student answer: " + studentLine + ", Solution: " + firstSolution.trim()/*(!doubleFailSolution ? solutionLineValue : solutionLineValueInt)*/ + ". " + autoFeedback;
-                  else
-                     responseLine += "Correct";
-                  
-                  hitCorrectOrPartialAnswer = true;
-                  break;
-               }
-            }
-            
-            autoFeedback = "";
-            
-         } //end for loop checking all solutions
-         
-         //Update points
-         if( correctAnswer ) {
-            totalPoints += 1.0;
-            responseLine += "Correct";
-         } else if( !hitCorrectOrPartialAnswer )
-            responseLine += "XXX Incorrect: 0/" + defaultPointValue + ". Student answer: " + studentLine + ", Solution: " + firstSolution.trim();
-         
-         maxPoints += defaultPointValue;
-         
-         lineNumber++;
-         
-         resultsFileText += responseLine + "\n";
-         SOPln( responseLine );
-         
-      } //end while going through files
-      
-      String score = "\nScore: " + totalPoints + " / " + maxPoints;
-      resultsFileText += score;
-      SOPln( score );
-      SOPln( "------------------------------------" );
+      String resultsFileText = result.toResultsText();
       
       //Write results file
-      if( createResultsFile ) {
-         String newFileName = studentFileName.substring( 0, studentFileName.indexOf(".") ) + "_Grade.txt";
-         createTextFile( newFileName );
-         writeToFile( newFileName, resultsFileText );
+      if( session.getSettings().createResultsFile )
+         writeResultsFile( studentFile, resultsFileText );
+      
+      return resultsFileText + "\n------------------------------------\n";
+   }
+   
+   /**
+      Get the message for a student file that could not be graded because of a problem in the
+      solution file
+      
+      @param result The graded student file
+      @param studentFileName The name of the student file
+      @param solutionFileName The name of the solution file
+      @return String The message, or null if the student file was graded
+   */
+   static String getErrorText( GradingSession.Result result, String studentFileName, String solutionFileName ) {
+      if( result.error == GradingSession.Result.MISSING_SOLUTION ) {
+         return "\nError! The number of solutions for the assignment " + solutionFileName + " is less than the\n" +
+                "number of answers given in the student file " + studentFileName + ".\n" +
+                "\nPlease fix this before grading this file.\n\n";
+      } else if( result.error == GradingSession.Result.MALFORMED_SOLUTION ) {
+         return "Error! Formatting issue within solution file '" + solutionFileName + "'.\n" +
+                "See problem #" + result.errorProblemId + ". One or more solution tags does not follow the format of\n" +
+                "Problem#. Solution Value ; Range NUMBER ; Range NUMBER to NUMBER ; PARTIAL CREDIT RATIO\n" +
+                "where the range and partial credit tags are optional. For solution tags that do not have\n" +
+                "the range or partial credit tags, there should be no semicolons present. In that case, the\n" +
+                "solution should look like the following:\n" +
+                "Problem#. Solution Value\n\nPlease edit this line and then run this program again.\n\n";
       }
+      
+      return null;
    }
    
    /**
-      Finds and returns the correct solution value, if it exists, for these
-      specs, which are delimited by semicolons
+      Read a student file and grade it. The compiled solution file is cached, or memory-mapped from
+      its snapshot when it has not changed, so a quiz drawn from a large problem bank only touches
+      the problems that the student answered
       
-      @param solutionSpecs The specs for this answer
-      @return String If the answer is correct, returns the correct answer. If it
-                     is an answer that is incorrect, or would receive partial
-                     credit, returns the empty string ""
+      @param studentFile The student response text file, eg. Bob_HW1.txt
+      @param session The grading session for the solution file
+      @return GradingSession.Result The grade of each answer and the score
    */
-   private static String findFirstCorrectSolution( String[] solutionParts ) {
-      for( int partCount = 0; partCount < solutionParts.length; partCount++ ) {
-         String[] parts = solutionParts[partCount].split(";");
-         
-         boolean skip = false;
-         for( int rep = 1; rep < parts.length; rep++ ) {
-            if( isNumeric( parts[rep].trim() ) ) {
-               skip = true;
-               break;
-            }
+   static GradingSession.Result gradeStudentFile( File studentFile, GradingSession session ) {
+      long start = GradingMetrics.ENABLED ? System.nanoTime() : 0;
+      ArrayList<String> studentLines = new ArrayList<String>();
+      Scanner studentScanner = getScanner( studentFile );
+      while( studentScanner.hasNextLine() )
+         studentLines.add( studentScanner.nextLine() );
+      studentScanner.close();
+      if( GradingMetrics.ENABLED ) GradingMetrics.record( GradingMetrics.Phase.READ, start );
+      
+      return gradeStudentLines( studentFile.getName(), studentLines, session );
+   }
+   
+   /**
+      Grade the lines of a student file that have already been read, eg. from an entry of a ZIP archive
+      
+      @param studentFileName The name of the student file, eg. Bob_HW1.txt
+      @param studentLines The lines of the student file
+      @param session The grading session for the solution file
+      @return GradingSession.Result The grade of each answer and the score
+   */
+   static GradingSession.Result gradeStudentLines( String studentFileName, List<String> studentLines, GradingSession session ) {
+      int nameEnd = studentFileName.indexOf("_");
+      if( nameEnd == -1 ) nameEnd = studentFileName.indexOf("-"); //Bob-HW1.txt
+      String studentName = studentFileName.substring( 0, nameEnd );
+      
+      GradingEvents.StudentGraded event = new GradingEvents.StudentGraded();
+      event.begin();
+      
+      GradingSession.Result result = session.grade( GradingSession.Submission.fromLines( studentName, studentLines ) );
+      
+      event.end();
+      if( event.shouldCommit() ) {
+         event.student = studentName;
+         event.assignment = AnswerKeyCache.getAssignmentName( studentFileName );
+         event.score = result.totalPoints;
+         event.maxScore = result.maxPoints;
+         event.commit();
+      }
+      
+      return result;
+   }
+   
+   /**
+      Write the results of a student to NAME_ASSIGNMENT_Grade.txt, in the same folder as the student file.
+      Grading again replaces the old results
+      
+      @param studentFile The student response text file, eg. Bob_HW1.txt
+      @param resultsFileText The results, from GradingSession.Result.toResultsText()
+      @return File The results file
+   */
+   static File writeResultsFile( File studentFile, String resultsFileText ) {
+      try {
+         return saveResultsFile( studentFile, resultsFileText );
+      } catch( IOException e ) {
+         e.printStackTrace();
+         return null;
+      }
+   }
+   
+   /**
+      Get the results file of a student file
+      
+      @param studentFile The student response text file, eg. Bob_HW1.txt
+      @return File NAME_ASSIGNMENT_Grade.txt, in the same folder as the student file
+   */
+   static File getResultsFile( File studentFile ) {
+      String studentFileName = studentFile.getName();
+      return new File( studentFile.getAbsoluteFile().getParentFile(),
+                       studentFileName.substring( 0, studentFileName.indexOf(".") ) + "_Grade.txt" );
+   }
+   
+   /**
+      Write the results of a student to NAME_ASSIGNMENT_Grade.txt, in the same folder as the student file,
+      replacing any old results
+      
+      @param studentFile The student response text file, eg. Bob_HW1.txt
+      @param resultsFileText The results, from GradingSession.Result.toResultsText()
+      @return File The results file
+      @throws IOException If the results file cannot be written
+      @see ResultWriter
+   */
+   static File saveResultsFile( File studentFile, String resultsFileText ) throws IOException {
+      File resultsFile = getResultsFile( studentFile );
+      
+      GradingEvents.ResultsWritten event = new GradingEvents.ResultsWritten();
+      event.begin();
+      long start = GradingMetrics.ENABLED ? System.nanoTime() : 0;
+      ProblemIndex.invalidate( resultsFile );
+      //Write a temporary file and move it into place, so a results file is never left half written.
+      //Each write gets its own temporary file, so two runs grading the same student cannot move
+      //or truncate each other's
+      Path temp = Files.createTempFile( resultsFile.getParentFile().toPath(), resultsFile.getName(), ".tmp" );
+      try {
+         Files.write( temp, resultsFileText.getBytes( Charset.defaultCharset() ) );
+         copyPermissions( studentFile, temp );
+         try {
+            Files.move( temp, resultsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+         } catch( AtomicMoveNotSupportedException e ) {
+            Files.move( temp, resultsFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
          }
-         
-         if( skip ) continue;
-         
-         return parts[0].trim();
+      } finally {
+         Files.deleteIfExists( temp );
       }
+      if( GradingMetrics.ENABLED ) GradingMetrics.record( GradingMetrics.Phase.WRITE, start );
       
-      return "";
+      event.end();
+      if( event.shouldCommit() ) {
+         event.resultsFile = resultsFile.getName();
+         event.bytes = resultsFile.length();
+         event.commit();
+      }
+      
+      return resultsFile;
+   }
+   
+   /**
+      Give a file the POSIX permissions of another file. Temporary files are created readable by their
+      owner only, so without this a results file would not be readable by anyone else
+      
+      @param from The file to copy the permissions of
+      @param to The file to set the permissions of
+   */
+   private static void copyPermissions( File from, Path to ) {
+      try {
+         Files.setPosixFilePermissions( to, Files.getPosixFilePermissions( from.toPath() ) );
+      } catch( UnsupportedOperationException | IOException e ) {
+         //Not a POSIX file system, or the file is not on disk. The default permissions are kept
+      }
    }
    
    /**
@@ -937,7 +1090,7 @@ public class Grader {
                for( int altNum = 0; altNum < alts.length; altNum++ ) {
                   //Apply algebraic solutions, if setting is turned on
                   ArrayList<String> substitutions = null;
-                  if( includeAlgebraicAlternates )
+                  if( settings.includeAlgebraicAlternates )
                      substitutions = applyAlgebraicMacros( alts[ altNum ] );
                      
                   if( substitutions != null ) {
@@ -952,7 +1105,7 @@ public class Grader {
             } else {
                //Apply algebraic solutions, if setting is turned on
                ArrayList<String> substitutions = null;
-               if( includeAlgebraicAlternates )
+               if( settings.includeAlgebraicAlternates )
                   substitutions = applyAlgebraicMacros( solution );
                   
                if( substitutions != null ) {
@@ -1221,7 +1374,7 @@ public class Grader {
       @see convertFractionsToDecimals See tag
    */
    public static String[] addSolutions( String[] problemList ) {
-      if( manuallyEnterSolutions ) {
+      if( settings.manuallyEnterSolutions ) {
          SOPln("\nThe program will prompt you to enter solutions, alternature solutions,\n" +
                "partial credit ratios (as decimals), accepted ranges from the given solution\n" +
                "(which should be written in the format 'range #', where # is the range from the\n" +
@@ -1337,26 +1490,10 @@ public class Grader {
       
       @param solution The solution to check and convert
       @return String The converted solution
+      @see GradingSession.checkAndConvertToDecimal( String solution, boolean convertFractionsToDecimals )
    */
    private static String checkAndConvertToDecimal( String solution ) {
-      if( convertFractionsToDecimals && solution.contains("/") ) {
-         String[] beforeAfterSlash = solution.split("/");
-         if( beforeAfterSlash.length <= 2 ) {
-            try {
-               double numerator   = Double.parseDouble( beforeAfterSlash[0] );
-               double denominator = Double.parseDouble( beforeAfterSlash[1] );
-               DecimalFormat df = new DecimalFormat("#.##"); //Force max of two decimal places
-               solution = df.format(numerator / denominator) + "";
-            } catch( NumberFormatException e ) {
-               //Do nothing
-            } catch( ArithmeticException e ) {
-               SOPln("\nYou tried to divide by zero!\n");
-               //Do nothing
-            }
-         }
-      }
-      
-      return solution;
+      return GradingSession.checkAndConvertToDecimal( solution, settings.convertFractionsToDecimals );
    }
    
    /**
@@ -1374,7 +1511,7 @@ public class Grader {
       for( int i = 0; i < problemList.length; i++ ) {
          SOP( problemList[i] );
          problemList[i] += scanner.nextLine().toLowerCase().trim();
-         if( convertFractionsToDecimals ) {
+         if( settings.convertFractionsToDecimals ) {
             String[] solutions = problemList[i].split("&");
             for( int j = 0; j < solutions.length; j++ ) {
                solutions[j] = solutions[j].trim();
@@ -1511,20 +1648,17 @@ public class Grader {
       @param line The line to change the text to
    */
    private static void editLineOfFile( File file, String problemNumber, String[] problemNumbers, int problemIndex, String line ) {
-      Scanner sc = getScanner( file );
-      
-      for( int i = 0; i < problemNumbers.length && sc.hasNextLine(); i++ ) {
-         if( i != problemIndex )
-            problemNumbers[i] = sc.nextLine();
-         else {
-            problemNumbers[i] = problemNumbers[i] + ". " + line;
-            sc.nextLine(); //Throw away line
-         }
+      if( problemIndex == -1 ) {
+         SOPln("\nProblem #" + problemNumber + " was not found in " + file.getName() + ".");
+         return;
       }
       
-      sc.close();
-      
-      writeToFile( file.getPath(), toSingleString( problemNumbers ) );
+      //Seek straight to the line and rewrite it in place
+      try {
+         ProblemIndex.of( file ).replaceLine( problemIndex, problemNumbers[ problemIndex ] + ". " + line );
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
    }
    
    /**
@@ -1532,18 +1666,16 @@ public class Grader {
       
       @param file The file to get the problem numbers from
       @return String[] The list of problem numbers (does not include periods)
+      @see ProblemIndex
    */
    private static String[] getProblemNumbers( File file ) {
-      ArrayList<String> problems = new ArrayList<String>();
-      
-      Scanner sc = getScanner( file );
-      
-      while( sc.hasNextLine() )
-         problems.add( sc.nextLine().split("\\.")[0] );
-      
-      sc.close();
+      try {
+         return ProblemIndex.of( file ).problemIds();
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
       
-      return problems.toArray( new String[ problems.size() ] );
+      return new String[0];
    }
    
    /**
@@ -1685,13 +1817,40 @@ public class Grader {
    
    /**
       Generates statistics for a set of graded files
+      
+      @see getStatistics( String subsetName, int defaultPointValue )
    */
    private static void generateStatistics() {
-      File[] fileList = getTextFiles( new String[]{"Temp", "Settings", "Solutions"} );
-      
       SOPln("\nWhich files do you want statistics for?\nEnter the subset name identifier, eg. 'HW1'" + 
             " for one assignment, or enter 'HW' for all homework files\nmore egs. 'Quiz1', 'Test', etc");
-      String searchToken = scanner.nextLine() + "_Grade";
+      
+      SOP( getStatistics( scanner.nextLine(), settings.defaultPointValue ) );
+   }
+   
+   /**
+      Get the statistics for a set of graded files
+      
+      @param subsetName The subset name identifier, eg. 'HW1' for one assignment, or 'HW' for all homework files
+      @param defaultPointValue The number of points that each question is worth
+      @return String The score for each question (for one assignment), and the total score
+   */
+   static String getStatistics( String subsetName, int defaultPointValue ) {
+      return getStatistics( new File("."), subsetName, defaultPointValue );
+   }
+   
+   /**
+      Get the statistics for a set of graded files in a folder
+      
+      @param directory The folder with the graded files
+      @param subsetName The subset name identifier, eg. 'HW1' for one assignment, or 'HW' for all homework files
+      @param defaultPointValue The number of points that each question is worth
+      @return String The score for each question (for one assignment), and the total score
+   */
+   static String getStatistics( File directory, String subsetName, int defaultPointValue ) {
+      File[] fileList = getTextFiles( directory, new String[]{"Temp", "Settings", "Solutions"} );
+      StringBuilder stats = new StringBuilder();
+      
+      String searchToken = subsetName + "_Grade";
       boolean gradeCategory = false;
       if( !hasNumber( searchToken ) )
          gradeCategory = true;
@@ -1712,8 +1871,9 @@ public class Grader {
                String line = sc.nextLine();
                
                //Set cumulatives
+               //Files can have different numbers of lines, since blank answers are not listed
                if( !gradeCategory && !line.equals("") && line.contains("Correct") ) {
-                  if( totalFileCount == 0 )
+                  if( lineNumber >= cumulativeGrades.size() )
                      cumulativeGrades.add( 1.0 );
                   else
                      cumulativeGrades.set( lineNumber, cumulativeGrades.get( lineNumber ) + 1.0 );
@@ -1727,12 +1887,12 @@ public class Grader {
                   break;
                } else {
                   //Incorrect answer
-                  if( totalFileCount == 0 )
+                  if( lineNumber >= cumulativeGrades.size() )
                      cumulativeGrades.add( 0.0 );
                }
                
                //Set totals
-               if( totalFileCount == 0 )
+               if( lineNumber >= totalGrades.size() )
                   totalGrades.add( 1.0 );
                else
                   totalGrades.set( lineNumber, totalGrades.get( lineNumber ) + 1.0 );
@@ -1750,14 +1910,15 @@ public class Grader {
       for( int rep = 0; rep < totalQuestions; rep++ ) {
          double qCumulative = cumulativeGrades.get(rep) / defaultPointValue;
          double qTotal      = totalGrades.get(rep) / defaultPointValue;
-         SOPln("Question " + (rep+1) + ": " + (int)qCumulative + " / " + (int)qTotal + ", " + df.format((qCumulative / qTotal)*100.0) + "%");
+         stats.append("Question " + (rep+1) + ": " + (int)qCumulative + " / " + (int)qTotal + ", " + df.format((qCumulative / qTotal)*100.0) + "%\n");
       }
       
       //Find total stats
       double totalCumulative = cumulativeGrade / totalFileCount;
       double totalTotal      = totalGrade / totalFileCount;
-      SOPln("\nTotal: " + df.format(totalCumulative) + " / " + totalTotal + ", " + df.format((totalCumulative / totalTotal)*100.0) + "%");
+      stats.append("\nTotal: " + df.format(totalCumulative) + " / " + totalTotal + ", " + df.format((totalCumulative / totalTotal)*100.0) + "%\n");
       
+      return stats.toString();
    }
    
    /**
@@ -1872,38 +2033,6 @@ public class Grader {
       SOPln("\nq. Quit program");
    }
    
-   /**
-      Set grader settings based on the GRADER_SETTINGS_FILE_NAME text file
-   */
-   private static void setGraderSettings() {
-      Scanner sc = getScanner( new File( GRADER_SETTINGS_FILE_NAME ) );
-      
-      int settingsCounter = 0;
-      while( sc.hasNextLine() ) {
-         String token = sc.nextLine().split("\\?")[1].trim();
-         token = token.toLowerCase();
-         boolean value = false;
-         int num = 0;
-         if( settingsCounter != 2 )
-            value = Boolean.parseBoolean( token );
-         else 
-            num = Integer.parseInt( token );
-         
-         if(      settingsCounter == 0 ) spacesMatter               = value;
-         else if( settingsCounter == 1 ) useAutoAltSolutions        = value;
-         else if( settingsCounter == 2 ) defaultPointValue          = num;
-         else if( settingsCounter == 3 ) manuallyEnterSolutions     = value;
-         else if( settingsCounter == 4 ) listOrderMatters           = value;
-         else if( settingsCounter == 5 ) convertFractionsToDecimals = value;
-         else if( settingsCounter == 6 ) createResultsFile          = value;
-         else if( settingsCounter == 7 ) includeAlgebraicAlternates = value;
-         
-         settingsCounter++;
-      }
-      
-      sc.close();
-   }
-   
    /**
       Get all the text in a File in one large String
       
@@ -2296,6 +2425,7 @@ public class Grader {
      * @param text The text to write to the File
      */
    private static void writeToFile( String fileLoc, String text ) {
+      ProblemIndex.invalidate( new File( fileLoc ) );
       FileWriter fw = null;
       try {
          fw = new FileWriter( fileLoc );
@@ -2313,6 +2443,7 @@ public class Grader {
      * @param text The text to write to the File
      */
    private static void addToFile( String fileLoc, String text ) {
+      ProblemIndex.invalidate( new File( fileLoc ) );
       FileWriter fw = null;
       try {
          fw = new FileWriter( fileLoc, true );
@@ -2350,83 +2481,23 @@ public class Grader {
    }
 
    /**
-      Move File from one location to another
-   
-      @param fileName The name of the File object to be moved
-      @param pathLocation The path location of the File
-      @param pathDestination The path destination for the File
+      Retrieve the downloaded set of files (presumably from Schoology or another online software)
+      and move each new student file to the current directory. Files that were already moved by
+      an earlier run, and copies of the same file, are skipped
+      
+      @see DownloadIngester
    */
-   private static void moveFile( String fileName, String pathLocation, String pathDestination ) {
+   public static void retrieveDownloadedFiles() {
+      Path downloadsPath = Paths.get( System.getProperty("user.home"), "Downloads" );
+      DownloadIngester ingester = new DownloadIngester( downloadsPath, Paths.get("."),
+                                                        Runtime.getRuntime().availableProcessors() );
       try {
-         Files.move( Paths.get( pathLocation + fileName ), Paths.get( pathDestination + fileName ) );
+         SOP( ingester.ingest( DownloadIngester.DEFAULT_MAX_AGE ).toString() );
       } catch( IOException e ) {
          e.printStackTrace();
       }
    }
 
-   /**
-      Retrieve the downloaded set of files (presumably from Schoology or another online software)
-      and move each student file to the current directory
-   */
-   public static void retrieveDownloadedFiles() {
-      final long X_MINUTES = 300000; //5 minutes = 300000 milliseconds
-      ArrayList<File> fileList = new ArrayList<File>();
-   
-      //Get downloads directory path
-      String home = System.getProperty("user.home");
-      String downloadsPathName = home + "/Downloads/";
-      Path downloadsPath = Paths.get( downloadsPathName );
-      
-      //Get files and folders in downloads folder
-      File downloadsFolder = downloadsPath.toFile();
-      String[] fileNames = downloadsFolder.list();
-      
-      //Find folders that were created within last X_MINUTES
-      for( String name : fileNames ) {
-         File downloadsFile = new File( downloadsPathName + name );
-         BasicFileAttributes attr = null;
-         try {
-            attr = Files.readAttributes( downloadsFile.toPath(), BasicFileAttributes.class );
-         } catch( IOException e ) {
-            e.printStackTrace();
-         }
-         long modifiedValue = attr.lastModifiedTime().toMillis();
-         long currentTimeValue = System.currentTimeMillis();
-         long timeSinceModification = currentTimeValue - modifiedValue;
-         
-         //Needs to be folder, not file
-         if( timeSinceModification < X_MINUTES && downloadsFile.isDirectory() )
-            getFilesInDirectoryAndSubdirectories( downloadsFile.getPath(), fileList );
-         
-      }
-      
-      //Move all files to current directory
-      for( File file : fileList )
-         moveFile( file.getName(), file.getPath().substring( 0, file.getPath().lastIndexOf("\\") + 1 ), ".\\" );
-      
-   }
-
-   /**
-      Get a list of all files in the directory and all subdirectories
-      
-      @param directoryName The path of the directory being looked at
-      @param files The list of files. Call this method with an empty list of Files
-   */
-   private static void getFilesInDirectoryAndSubdirectories( String directoryName, List<File> files ) {
-      File directory = new File( directoryName );
-   
-      //Get all files from a directory.
-      File[] fList = directory.listFiles();
-      if( fList != null ) {
-         for( File file : fList ) {      
-            if( file.isFile() )
-               files.add( file );
-            else if( file.isDirectory() )
-               getFilesInDirectoryAndSubdirectories( file.getAbsolutePath(), files );
-         }
-      }
-   }
-
    /** Get a Scanner object that is reading a File based on a File name */
    private static Scanner getScanner( String fileName )
    { return getScanner( new File( fileName ) ); }
@@ -2448,15 +2519,17 @@ public class Grader {
    }
 
    private static void SOP( String str ) {
-      System.out.print( str );
+      ResultWriter writer = console;
+      if( writer != null ) writer.print( str );
+      else                 System.out.print( str );
    }
    
    private static void SOPln() {
-      System.out.println();
+      SOP("\n");
    }
    
    private static void SOPln( String str ) {
-      System.out.println( str );
+      SOP( str + "\n" );
    }
 
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+   GraderClient.java
+
+   Sends one command to a GraderDaemon that is running in the current folder, and prints the
+   reply. The client does no grading itself, so it starts quickly
+
+      java GraderClient grade HW1
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see GraderDaemon
+*/
+public class GraderClient {
+
+   /**
+      @param args The command and its arguments, eg. grade HW1
+   */
+   public static void main( String[] args ) {
+      if( args.length == 0 ) {
+         System.out.println("Usage: java GraderClient grade ASSIGNMENT | stats SUBSET_NAME | plagiarism | status | metrics [prometheus] | stop");
+         return;
+      }
+
+      File socketFile = GraderDaemon.getSocketFile( new File(".") );
+      try( SocketChannel channel = SocketChannel.open( StandardProtocolFamily.UNIX ) ) {
+         channel.connect( UnixDomainSocketAddress.of( socketFile.toPath() ) );
+
+         ByteBuffer command = ByteBuffer.wrap( (String.join( " ", args ) + "\n").getBytes( StandardCharsets.UTF_8 ) );
+         while( command.hasRemaining() )
+            channel.write( command );
+
+         ByteBuffer buffer = ByteBuffer.allocate( 64 * 1024 );
+         while( channel.read( buffer ) != -1 ) {
+            buffer.flip();
+            System.out.write( buffer.array(), 0, buffer.limit() );
+            buffer.clear();
+         }
+         System.out.flush();
+      } catch( IOException e ) {
+         System.out.println("No grader daemon is running in this folder. Start one with: java Grader daemon");
+         System.exit( 1 );
+      }
+   }
+}
@@ -0,0 +1,274 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+   GraderDaemon.java
+
+   Keeps Grader running in the background, so that the compiled answer keys, the verdict caches
+   and the already-compiled grading code are reused from one run to the next. Re-grading an
+   assignment after fixing a solution only compiles the changed solution file again, instead of
+   starting a new JVM.
+
+   Start it with
+
+      java Grader daemon
+
+   from the folder with the student files, the solution files and Grader_Settings.txt. It listens
+   on the Unix domain socket .grader/daemon.sock in that folder. Then send it commands with
+   GraderClient:
+
+      java GraderClient grade HW1     Grade all student files of an assignment
+      java GraderClient stats HW1     Statistics for a set of graded files, eg. HW1, or HW for all homework
+      java GraderClient plagiarism    Check for plagiarism
+      java GraderClient status        Cache statistics
+      java GraderClient metrics       Grading metrics as JSON, or "metrics prometheus" (see GradingMetrics)
+      java GraderClient stop          Stop the daemon
+
+   Each connection sends one command line, and the daemon writes back the same text that the
+   menu would print, then closes the connection
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see GraderClient
+   @see GradingSession
+*/
+public class GraderDaemon {
+
+   public static final String SOCKET_FILE_NAME = "daemon.sock";
+
+   private final File directory;
+   private final AnswerKeyCache keyCache;
+   private final GraderSettings.Source settingsSource;
+   private final ConcurrentHashMap<String, GradingSession> sessions = new ConcurrentHashMap<String, GradingSession>();
+   private final CountDownLatch stopped = new CountDownLatch( 1 );
+
+   private ServerSocketChannel server;
+   private File socketFile;
+
+   /**
+      @param directory The folder with the student files, the solution files and the settings file
+      @param keyCache The cache of compiled answer keys
+   */
+   public GraderDaemon( File directory, AnswerKeyCache keyCache ) {
+      this.directory = directory;
+      this.keyCache = keyCache;
+      this.settingsSource = new GraderSettings.Source( new File( directory, "Grader_Settings.txt" ) );
+   }
+
+   /**
+      Run the daemon command of Grader: start a daemon for the current folder, and wait until it is
+      sent the stop command. Grader loads this class by name, so that Grader can be compiled and
+      run without Java 21
+
+      @param keyCache The cache of compiled answer keys
+      @param args Not used
+      @param console Where the socket file of the daemon is printed
+      @throws IOException If the socket cannot be opened, or if a daemon is already running for this folder
+   */
+   public static void runCommand( AnswerKeyCache keyCache, String[] args, ResultWriter console ) throws IOException {
+      GraderDaemon daemon = new GraderDaemon( new File(".").getAbsoluteFile(), keyCache );
+      daemon.start();
+      console.print( "Grader daemon listening on " + getSocketFile( new File(".") ).getPath() + "\n" );
+      daemon.awaitStop();
+   }
+
+   /**
+      Get the socket file of the daemon for a folder
+
+      @param directory The folder that the daemon grades
+      @return File The socket file, .grader/daemon.sock
+   */
+   public static File getSocketFile( File directory ) {
+      return new File( new File( directory, ProblemIndex.SIDECAR_FOLDER_NAME ), SOCKET_FILE_NAME );
+   }
+
+   /**
+      Start listening for commands. Each connection is handled on its own virtual thread
+
+      @throws IOException If the socket cannot be opened, or if a daemon is already running for this folder
+   */
+   public void start() throws IOException {
+      socketFile = getSocketFile( directory );
+      socketFile.getParentFile().mkdirs();
+
+      //A socket file left by a daemon that did not stop cleanly can be replaced; a running daemon cannot
+      if( socketFile.exists() ) {
+         try {
+            SocketChannel.open( UnixDomainSocketAddress.of( socketFile.toPath() ) ).close();
+            throw new IOException( "A daemon is already running on " + socketFile );
+         } catch( IOException e ) {
+            if( e.getMessage() != null && e.getMessage().startsWith("A daemon") ) throw e;
+            Files.deleteIfExists( socketFile.toPath() );
+         }
+      }
+
+      server = ServerSocketChannel.open( StandardProtocolFamily.UNIX );
+      server.bind( UnixDomainSocketAddress.of( socketFile.toPath() ) );
+      Thread.ofVirtual().name("grader-daemon").start( this::acceptConnections );
+   }
+
+   /**
+      Wait until the daemon is sent the stop command
+   */
+   public void awaitStop() {
+      try {
+         stopped.await();
+      } catch( InterruptedException e ) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+      Stop listening and remove the socket file
+   */
+   public void stop() {
+      try {
+         if( server != null ) server.close();
+         if( socketFile != null ) Files.deleteIfExists( socketFile.toPath() );
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
+      stopped.countDown();
+   }
+
+   private void acceptConnections() {
+      while( server.isOpen() ) {
+         try {
+            SocketChannel client = server.accept();
+            Thread.ofVirtual().start( () -> handle( client ) );
+         } catch( IOException e ) {
+            if( server.isOpen() ) e.printStackTrace();
+         }
+      }
+   }
+
+   /**
+      Read one command from a client, run it, and write back the reply
+
+      @param client The connection to the client
+   */
+   private void handle( SocketChannel client ) {
+      boolean stop = false;
+      try( SocketChannel channel = client ) {
+         String command = readLine( channel );
+         stop = command.trim().equalsIgnoreCase("stop");
+
+         String reply;
+         try {
+            reply = stop ? "Daemon stopped.\n" : run( command.trim() );
+         } catch( RuntimeException e ) {
+            reply = "Error! " + e + "\n";
+         }
+
+         ByteBuffer bytes = ByteBuffer.wrap( reply.getBytes( StandardCharsets.UTF_8 ) );
+         while( bytes.hasRemaining() )
+            channel.write( bytes );
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
+
+      if( stop ) stop();
+   }
+
+   /**
+      Run one command
+
+      @param command The command line, eg. "grade HW1"
+      @return String The text to send back to the client
+   */
+   String run( String command ) {
+      String[] tokens = command.split("\\s+", 2);
+      String name = tokens[0].toLowerCase();
+      String arg = tokens.length > 1 ? tokens[1].trim() : "";
+
+      switch( name ) {
+         case "grade":
+            if( arg.isEmpty() ) return "Usage: grade ASSIGNMENT\n";
+            return grade( arg );
+         case "stats":
+            if( arg.isEmpty() ) return "Usage: stats SUBSET_NAME\n";
+            return Grader.getStatistics( arg, settingsSource.current().defaultPointValue );
+         case "plagiarism":
+            return "Checking for plagiarism is not available yet.\n";
+         case "status":
+            return getStatus();
+         case "metrics":
+            return (arg.equalsIgnoreCase("prometheus") ? GradingMetrics.toPrometheus() : GradingMetrics.toJson()) + "\n";
+         default:
+            return "Unknown command: " + name + "\nCommands: grade ASSIGNMENT, stats SUBSET_NAME, plagiarism, status, metrics, stop\n";
+      }
+   }
+
+   /**
+      Grade all student files of an assignment. The session of the assignment is kept, along with
+      its verdict cache, until the solution file or the settings change
+
+      @param assignment The name of the assignment, eg. HW1
+      @return String The results of every student file
+   */
+   private String grade( String assignment ) {
+      File solutionFile = AnswerKeyCache.findSolutionFile( directory, assignment );
+      if( solutionFile == null ) return "\nNo solution file found for " + assignment + ".\n";
+
+      AnswerKey key;
+      try {
+         key = keyCache.get( solutionFile );
+      } catch( IOException e ) {
+         return "Error! Could not read " + solutionFile.getName() + ": " + e.getMessage() + "\n";
+      }
+
+      GraderSettings settings = settingsSource.current();
+      String name = assignment.toLowerCase();
+      GradingSession session = sessions.get( name );
+      if( session == null || session.getKey() != key || session.getSettings() != settings ) {
+         session = new GradingSession( settings, key, true );
+         sessions.put( name, session );
+      }
+
+      return Grader.gradeAssignment( assignment, solutionFile, session );
+   }
+
+   /**
+      Get the statistics of the answer key cache and the verdict cache of each assignment
+
+      @return String The cache statistics
+   */
+   private String getStatus() {
+      StringBuilder status = new StringBuilder();
+      status.append( "Answer keys: " ).append( keyCache.getStats() ).append("\n");
+      for( Map.Entry<String, GradingSession> entry : sessions.entrySet() ) {
+         GradingSession session = entry.getValue();
+         status.append( "Verdicts for " ).append( entry.getKey() ).append( ": Hits: " ).append( session.getCacheHits() )
+               .append( ", Misses: " ).append( session.getCacheMisses() ).append("\n");
+      }
+
+      return status.toString();
+   }
+
+   /**
+      Read one line from a connection
+
+      @param channel The connection
+      @return String The line, without the line break
+   */
+   private static String readLine( SocketChannel channel ) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate( 4096 );
+      while( buffer.hasRemaining() && channel.read( buffer ) != -1 ) {
+         int end = buffer.position();
+         if( end > 0 && buffer.get( end - 1 ) == '\n' ) break;
+      }
+
+      buffer.flip();
+      return StandardCharsets.UTF_8.decode( buffer ).toString().split("\\r?\\n", 2)[0];
+   }
+}
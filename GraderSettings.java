@@ -0,0 +1,175 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+   GraderSettings.java
+
+   An unchangeable snapshot of the grading options in the Grader_Settings.txt file. Each line of
+   the settings file is a question followed by its value, such as
+
+      Spaces Matter? false
+
+   Settings are matched by the question rather than by their line number, so the lines can be in
+   any order. Settings that are missing keep their default values.
+
+   A snapshot is passed to each grading run, so that a run uses the same settings from start to
+   finish, even if the settings file is changed while it is running
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see Grader
+*/
+public final class GraderSettings {
+
+   /*Setting names, as they appear in the settings file (caps do not matter) -- @@NOTE: Anytime a setting
+     is added, it needs to be added here, in the parse(...) method, and in the Grader_Settings.txt file*/
+   public static final String SPACES_MATTER                 = "spaces matter";
+   public static final String USE_AUTO_ALT_SOLUTIONS        = "use automatic alternate solutions";
+   public static final String DEFAULT_POINT_VALUE           = "default point value";
+   public static final String MANUALLY_ENTER_SOLUTIONS      = "manually enter solutions";
+   public static final String LIST_ORDER_MATTERS            = "list order matters";
+   public static final String CONVERT_FRACTIONS_TO_DECIMALS = "convert fractions to decimals";
+   public static final String CREATE_RESULTS_FILE           = "create results files for each student when grading";
+   public static final String INCLUDE_ALGEBRAIC_ALTERNATES  = "include algebraic substitutions";
+
+   public static final GraderSettings DEFAULTS = new GraderSettings( false, true, 1, false, true, true, true, true );
+
+   public final boolean spacesMatter;
+   public final boolean useAutoAltSolutions;
+   public final int     defaultPointValue;
+   public final boolean manuallyEnterSolutions;
+   public final boolean listOrderMatters;
+   public final boolean convertFractionsToDecimals;
+   public final boolean createResultsFile;
+   public final boolean includeAlgebraicAlternates;
+
+   public GraderSettings( boolean spacesMatter, boolean useAutoAltSolutions, int defaultPointValue,
+                          boolean manuallyEnterSolutions, boolean listOrderMatters, boolean convertFractionsToDecimals,
+                          boolean createResultsFile, boolean includeAlgebraicAlternates ) {
+      this.spacesMatter               = spacesMatter;
+      this.useAutoAltSolutions        = useAutoAltSolutions;
+      this.defaultPointValue          = defaultPointValue;
+      this.manuallyEnterSolutions     = manuallyEnterSolutions;
+      this.listOrderMatters           = listOrderMatters;
+      this.convertFractionsToDecimals = convertFractionsToDecimals;
+      this.createResultsFile          = createResultsFile;
+      this.includeAlgebraicAlternates = includeAlgebraicAlternates;
+   }
+
+   /**
+      Read the settings from the lines of a settings file
+
+      @param lines The lines of the settings file
+      @return GraderSettings The settings. Settings that are missing or cannot be read keep their
+                             default values
+   */
+   public static GraderSettings parse( List<String> lines ) {
+      GraderSettings d = DEFAULTS;
+      boolean spacesMatter               = d.spacesMatter;
+      boolean useAutoAltSolutions        = d.useAutoAltSolutions;
+      int     defaultPointValue          = d.defaultPointValue;
+      boolean manuallyEnterSolutions     = d.manuallyEnterSolutions;
+      boolean listOrderMatters           = d.listOrderMatters;
+      boolean convertFractionsToDecimals = d.convertFractionsToDecimals;
+      boolean createResultsFile          = d.createResultsFile;
+      boolean includeAlgebraicAlternates = d.includeAlgebraicAlternates;
+
+      for( String line : lines ) {
+         int questionMark = line.indexOf("?");
+         if( questionMark == -1 ) continue;
+
+         String name = line.substring( 0, questionMark ).trim().toLowerCase();
+         String token = line.substring( questionMark + 1 ).trim().toLowerCase();
+         boolean value = Boolean.parseBoolean( token );
+
+         if(      name.equals( SPACES_MATTER ) )                 spacesMatter               = value;
+         else if( name.equals( USE_AUTO_ALT_SOLUTIONS ) )        useAutoAltSolutions        = value;
+         else if( name.equals( DEFAULT_POINT_VALUE ) ) {
+            try {
+               defaultPointValue = Integer.parseInt( token );
+            } catch( NumberFormatException e ) {
+               //Keep default
+            }
+         }
+         else if( name.equals( MANUALLY_ENTER_SOLUTIONS ) )      manuallyEnterSolutions     = value;
+         else if( name.equals( LIST_ORDER_MATTERS ) )            listOrderMatters           = value;
+         else if( name.equals( CONVERT_FRACTIONS_TO_DECIMALS ) ) convertFractionsToDecimals = value;
+         else if( name.equals( CREATE_RESULTS_FILE ) )           createResultsFile          = value;
+         else if( name.equals( INCLUDE_ALGEBRAIC_ALTERNATES ) )  includeAlgebraicAlternates = value;
+      }
+
+      return new GraderSettings( spacesMatter, useAutoAltSolutions, defaultPointValue, manuallyEnterSolutions,
+                                 listOrderMatters, convertFractionsToDecimals, createResultsFile, includeAlgebraicAlternates );
+   }
+
+   @Override
+   public String toString() {
+      return "Spaces Matter? " + spacesMatter + "\n" +
+             "Use automatic alternate solutions? " + useAutoAltSolutions + "\n" +
+             "Default point value? " + defaultPointValue + "\n" +
+             "Manually enter solutions? " + manuallyEnterSolutions + "\n" +
+             "List order matters? " + listOrderMatters + "\n" +
+             "Convert fractions to decimals? " + convertFractionsToDecimals + "\n" +
+             "Create results files for each student when grading? " + createResultsFile + "\n" +
+             "Include algebraic substitutions? " + includeAlgebraicAlternates;
+   }
+
+   /**
+      Watches a settings file, and only reads it again when it has changed. The last modified time
+      and length of the file are checked first. If either has changed, the file is read, and it is
+      only parsed again if its checksum has changed
+   */
+   public static final class Source {
+
+      private final File file;
+      private long length = -1;
+      private long modified = -1;
+      private long checksum = -1;
+      private GraderSettings current = DEFAULTS;
+
+      /**
+         @param file The settings file. If it does not exist, the default settings are used
+      */
+      public Source( File file ) {
+         this.file = file;
+      }
+
+      /**
+         Get the current settings, reading the settings file again if it has changed
+
+         @return GraderSettings The current settings
+      */
+      public synchronized GraderSettings current() {
+         long newLength = file.length();
+         long newModified = file.lastModified();
+         if( newLength == length && newModified == modified ) return current;
+
+         length = newLength;
+         modified = newModified;
+         if( !file.exists() ) {
+            checksum = -1;
+            current = DEFAULTS;
+            return current;
+         }
+
+         try {
+            byte[] bytes = Files.readAllBytes( file.toPath() );
+            CRC32 crc = new CRC32();
+            crc.update( bytes, 0, bytes.length );
+            if( crc.getValue() != checksum ) {
+               checksum = crc.getValue();
+               current = parse( Arrays.asList( new String( bytes, Charset.defaultCharset() ).split("\\r?\\n|\\r") ) );
+            }
+         } catch( IOException e ) {
+            e.printStackTrace(); //Keep the last settings that were read
+         }
+
+         return current;
+      }
+   }
+}
@@ -0,0 +1,117 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+   GradingEvents.java
+
+   Java Flight Recorder events for grading, so that a recording shows grading next to the JVM's own
+   garbage collection, I/O and thread events. Record with
+
+      java -XX:StartFlightRecording=filename=grading.jfr Grader
+
+   and open the recording in JDK Mission Control, or print the events with
+
+      jfr print --events grader.StudentGraded grading.jfr
+
+   A class has many answers, so only a sample of them are recorded as AnswerMatched events: one in
+   every 64 by default, or one in every N with -Dgrader.jfr.answerSampleRate=N (1 records every answer).
+   Events cost almost nothing when no recording is running
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see GradingMetrics
+*/
+public final class GradingEvents {
+
+   public static final int ANSWER_SAMPLE_RATE = Math.max( 1, Integer.getInteger( "grader.jfr.answerSampleRate", 64 ) );
+
+   private GradingEvents() {}
+
+   /**
+      @return boolean True if this answer should be recorded, one time in ANSWER_SAMPLE_RATE
+   */
+   static boolean sampleAnswer() {
+      return ANSWER_SAMPLE_RATE == 1 || ThreadLocalRandom.current().nextInt( ANSWER_SAMPLE_RATE ) == 0;
+   }
+
+   @Name("grader.StudentGraded")
+   @Label("Student Graded")
+   @Description("One student submission was read and graded")
+   @Category("Grader")
+   @StackTrace(false)
+   public static final class StudentGraded extends Event {
+      @Label("Student")
+      public String student;
+
+      @Label("Assignment")
+      public String assignment;
+
+      @Label("Score")
+      public double score;
+
+      @Label("Max Score")
+      public double maxScore;
+   }
+
+   @Name("grader.AnswerMatched")
+   @Label("Answer Matched")
+   @Description("One answer was checked against the alternate solutions of its problem. Only a sample of answers are recorded")
+   @Category("Grader")
+   @StackTrace(false)
+   public static final class AnswerMatched extends Event {
+      @Label("Problem")
+      public String problem;
+
+      @Label("Match Path")
+      @Description("exact, range, list or incorrect")
+      public String matchPath;
+
+      @Label("Sample Rate")
+      @Description("Each recorded answer stands for this many answers")
+      public int sampled;
+   }
+
+   @Name("grader.KeyCompiled")
+   @Label("Key Compiled")
+   @Description("A solution file was compiled, or its compiled snapshot was loaded")
+   @Category("Grader")
+   @StackTrace(false)
+   public static final class KeyCompiled extends Event {
+      @Label("Solution File")
+      public String solutionFile;
+
+      @Label("Problems")
+      public int problems;
+
+      @Label("Alternates")
+      public int alternates;
+
+      @Label("Size")
+      @DataAmount
+      public long bytes;
+
+      @Label("From Snapshot")
+      public boolean fromSnapshot;
+   }
+
+   @Name("grader.ResultsWritten")
+   @Label("Results Written")
+   @Description("A _Grade.txt results file was written")
+   @Category("Grader")
+   @StackTrace(false)
+   public static final class ResultsWritten extends Event {
+      @Label("Results File")
+      public String resultsFile;
+
+      @Label("Size")
+      @DataAmount
+      public long bytes;
+   }
+}
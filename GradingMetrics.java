@@ -0,0 +1,202 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+   GradingMetrics.java
+
+   Counts where grading spends its time. Each phase of grading a student -- reading the file,
+   formatting the answers, looking up the problems in the key, matching, and writing the results --
+   is timed, and each answer is counted by the match path that decided it:
+
+      exact       The answer is the same as an alternate solution
+      range       The answer is a number within the range of an alternate solution
+      list        The answer is a list with the same values as an alternate solution, in another order
+      incorrect   No alternate solution accepts the answer
+
+   Hits and misses of the compiled key cache and the verdict caches are counted as well.
+
+   Metrics are off unless Grader is started with -Dgrader.metrics=true. When they are off, every
+   check of ENABLED is removed by the JIT compiler, so grading does not pay for them. The report
+   is available as JSON or in the Prometheus text format, from GET /metrics on the grading service
+   or the metrics command of the daemon
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see GradingSession
+*/
+public final class GradingMetrics {
+
+   public static final boolean ENABLED = Boolean.getBoolean("grader.metrics");
+
+   /**
+      A timed part of grading one student
+   */
+   public enum Phase {
+      READ, NORMALIZE, LOOKUP, WRITE;
+
+      final LongAdder count = new LongAdder();
+      final LongAdder nanos = new LongAdder();
+   }
+
+   /**
+      The check that decided whether an answer was accepted
+   */
+   public enum MatchPath {
+      EXACT, RANGE, LIST, INCORRECT;
+
+      final LongAdder count = new LongAdder();
+      final LongAdder nanos = new LongAdder();
+   }
+
+   private static final LongAdder keyCacheHits = new LongAdder();
+   private static final LongAdder keyCacheMisses = new LongAdder();
+   private static final LongAdder verdictCacheHits = new LongAdder();
+   private static final LongAdder verdictCacheMisses = new LongAdder();
+
+   private GradingMetrics() {}
+
+   /**
+      Count the time of one phase. Only call this if ENABLED is true
+
+      @param phase The phase
+      @param start When the phase started, from System.nanoTime()
+      @return long The current time, so that the next phase can start from it
+   */
+   public static long record( Phase phase, long start ) {
+      long now = System.nanoTime();
+      phase.count.increment();
+      phase.nanos.add( now - start );
+      return now;
+   }
+
+   /**
+      Count one matched answer. Only call this if ENABLED is true
+
+      @param key The compiled solution file
+      @param alt The alternate that accepted the answer, or -1 if none did
+      @param studentLine The formatted answer
+      @param start When matching started, from System.nanoTime()
+      @return long The current time
+   */
+   public static long recordMatch( AnswerKey key, int alt, String studentLine, long start ) {
+      long now = System.nanoTime();
+      MatchPath path = pathOf( key, alt, studentLine );
+      path.count.increment();
+      path.nanos.add( now - start );
+      return now;
+   }
+
+   public static void recordKeyCache( boolean hit ) {
+      (hit ? keyCacheHits : keyCacheMisses).increment();
+   }
+
+   public static void recordVerdictCache( boolean hit ) {
+      (hit ? verdictCacheHits : verdictCacheMisses).increment();
+   }
+
+   /**
+      Find the check that made an alternate accept an answer. The alternates are checked in the
+      same order as AnswerKey.matches(...)
+
+      @param key The compiled solution file
+      @param alt The alternate that accepted the answer, or -1 if none did
+      @param studentLine The formatted answer
+      @return MatchPath The match path
+   */
+   static MatchPath pathOf( AnswerKey key, int alt, String studentLine ) {
+      if( alt == -1 ) return MatchPath.INCORRECT;
+      if( (key.flags( alt ) & AnswerKey.NUMERIC) != 0 && !studentLine.equals( key.value( alt ) ) ) return MatchPath.RANGE;
+      if( studentLine.equals( key.value( alt ) ) ) return MatchPath.EXACT;
+      return MatchPath.LIST;
+   }
+
+   /**
+      Set every count back to zero
+   */
+   public static void reset() {
+      for( Phase phase : Phase.values() ) {
+         phase.count.reset();
+         phase.nanos.reset();
+      }
+      for( MatchPath path : MatchPath.values() ) {
+         path.count.reset();
+         path.nanos.reset();
+      }
+      keyCacheHits.reset();
+      keyCacheMisses.reset();
+      verdictCacheHits.reset();
+      verdictCacheMisses.reset();
+   }
+
+   /**
+      Write the report as JSON. Times are in milliseconds, and means in microseconds
+
+      @return String The report
+   */
+   public static String toJson() {
+      StringBuilder json = new StringBuilder();
+      json.append( "{\"enabled\":" ).append( ENABLED ).append( ",\"phases\":{" );
+      for( Phase phase : Phase.values() ) {
+         if( phase.ordinal() > 0 ) json.append(',');
+         timerJson( json, name( phase ), phase.count.sum(), phase.nanos.sum() );
+      }
+      json.append( "},\"matchPaths\":{" );
+      for( MatchPath path : MatchPath.values() ) {
+         if( path.ordinal() > 0 ) json.append(',');
+         timerJson( json, name( path ), path.count.sum(), path.nanos.sum() );
+      }
+      json.append( "},\"caches\":{" );
+      cacheJson( json, "key", keyCacheHits.sum(), keyCacheMisses.sum() );
+      json.append(',');
+      cacheJson( json, "verdict", verdictCacheHits.sum(), verdictCacheMisses.sum() );
+      json.append( "}}" );
+
+      return json.toString();
+   }
+
+   /**
+      Write the report in the Prometheus text format
+
+      @return String The report
+   */
+   public static String toPrometheus() {
+      StringBuilder text = new StringBuilder();
+      text.append( "# HELP grader_phase_seconds Time spent in each phase of grading a student\n" );
+      text.append( "# TYPE grader_phase_seconds summary\n" );
+      for( Phase phase : Phase.values() ) {
+         text.append( "grader_phase_seconds_sum{phase=\"" ).append( name( phase ) ).append( "\"} " ).append( phase.nanos.sum() / 1e9 ).append('\n');
+         text.append( "grader_phase_seconds_count{phase=\"" ).append( name( phase ) ).append( "\"} " ).append( phase.count.sum() ).append('\n');
+      }
+
+      text.append( "# HELP grader_match_seconds Time spent matching answers, by the match path that decided them\n" );
+      text.append( "# TYPE grader_match_seconds summary\n" );
+      for( MatchPath path : MatchPath.values() ) {
+         text.append( "grader_match_seconds_sum{path=\"" ).append( name( path ) ).append( "\"} " ).append( path.nanos.sum() / 1e9 ).append('\n');
+         text.append( "grader_match_seconds_count{path=\"" ).append( name( path ) ).append( "\"} " ).append( path.count.sum() ).append('\n');
+      }
+
+      text.append( "# HELP grader_cache_requests_total Lookups in the compiled key cache and the verdict caches\n" );
+      text.append( "# TYPE grader_cache_requests_total counter\n" );
+      text.append( "grader_cache_requests_total{cache=\"key\",result=\"hit\"} " ).append( keyCacheHits.sum() ).append('\n');
+      text.append( "grader_cache_requests_total{cache=\"key\",result=\"miss\"} " ).append( keyCacheMisses.sum() ).append('\n');
+      text.append( "grader_cache_requests_total{cache=\"verdict\",result=\"hit\"} " ).append( verdictCacheHits.sum() ).append('\n');
+      text.append( "grader_cache_requests_total{cache=\"verdict\",result=\"miss\"} " ).append( verdictCacheMisses.sum() ).append('\n');
+
+      return text.toString();
+   }
+
+   private static void timerJson( StringBuilder json, String name, long count, long nanos ) {
+      json.append( Json.quote( name ) ).append( ":{\"count\":" ).append( count )
+          .append( ",\"totalMs\":" ).append( Json.number( Math.round( nanos / 1e4 ) / 100.0 ) )
+          .append( ",\"meanUs\":" ).append( Json.number( count == 0 ? 0.0 : Math.round( nanos / (double)count / 100.0 ) / 10.0 ) ).append('}');
+   }
+
+   private static void cacheJson( StringBuilder json, String name, long hits, long misses ) {
+      long total = hits + misses;
+      json.append( Json.quote( name ) ).append( ":{\"hits\":" ).append( hits ).append( ",\"misses\":" ).append( misses )
+          .append( ",\"hitRate\":" ).append( Json.number( total == 0 ? 0.0 : Math.round( hits * 10000.0 / total ) / 10000.0 ) ).append('}');
+   }
+
+   private static String name( Enum<?> value ) {
+      return value.name().toLowerCase();
+   }
+}
@@ -0,0 +1,348 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+   GradingServer.java
+
+   A local HTTP service for grading submissions from a submission portal. Each request is handled
+   on its own virtual thread, and answer keys are compiled once and kept in an AnswerKeyCache.
+
+   Start it with
+
+      java Grader serve [PORT] [--all-interfaces]
+
+   from the folder with the solution files and Grader_Settings.txt. The service only accepts
+   connections from this computer, since its responses include the solutions, unless it is started
+   with --all-interfaces. Then POST a submission to /grade:
+
+      {"student": "Bob", "assignment": "HW1", "answers": {"1": "23", "2": "Rectangle", "3": "4/5"}}
+
+   The answers may also be a list of student file lines, such as ["1. 23", "2. Rectangle"]. The
+   response has the score and a verdict for each answer:
+
+      {"student":"Bob","assignment":"HW1","score":3,"maxScore":3,"verdicts":[{"problem":"1","status":"correct",...}]}
+
+   The hits of the alternate solutions (see AlternateOrder) are saved every SAVE_INTERVAL and when
+   the server stops, so a restarted service checks the common answers first right away.
+
+   GET /health returns the answer key cache statistics. GET /metrics returns the grading metrics in
+   the Prometheus text format, or as JSON with /metrics?format=json (see GradingMetrics)
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see GradingSession
+*/
+public class GradingServer {
+
+   public static final int DEFAULT_PORT = 8080;
+
+   private static final long SETTINGS_CHECK_INTERVAL = 1000; //milliseconds
+
+   /*Requests with a larger body are refused*/
+   public static final int MAX_BODY_BYTES = 1024 * 1024;
+
+   /*How often the hits of the alternate solutions are saved*/
+   private static final long SAVE_INTERVAL = 60; //seconds
+
+   private final File directory;
+   private final AnswerKeyCache keyCache;
+   private final GraderSettings.Source settingsSource;
+   private final ConcurrentHashMap<String, File> solutionFiles = new ConcurrentHashMap<String, File>();
+   private final ConcurrentHashMap<File, AnswerKey> gradedKeys = new ConcurrentHashMap<File, AnswerKey>(); //The latest key of each solution file
+
+   private volatile GraderSettings settings;
+   private final AtomicLong nextSettingsCheck = new AtomicLong();
+
+   private HttpServer server;
+   private ExecutorService executor;
+   private ScheduledExecutorService saver;
+
+   /**
+      @param directory The folder with the solution files and the settings file
+      @param keyCache The cache of compiled answer keys
+   */
+   public GradingServer( File directory, AnswerKeyCache keyCache ) {
+      this.directory = directory;
+      this.keyCache = keyCache;
+      this.settingsSource = new GraderSettings.Source( new File( directory, "Grader_Settings.txt" ) );
+      this.settings = settingsSource.current();
+      this.nextSettingsCheck.set( System.currentTimeMillis() + SETTINGS_CHECK_INTERVAL );
+   }
+
+   /**
+      Run the serve command of Grader: start a server for the current folder. Grader loads this
+      class by name, so that Grader can be compiled and run without Java 21
+
+      @param keyCache The cache of compiled answer keys
+      @param args [PORT] [--all-interfaces]
+      @param console Where the address of the service is printed
+      @throws IOException If the port cannot be opened
+   */
+   public static void runCommand( AnswerKeyCache keyCache, String[] args, ResultWriter console ) throws IOException {
+      int port = DEFAULT_PORT;
+      boolean allInterfaces = false;
+      for( String arg : args ) {
+         if( arg.equals("--all-interfaces") ) allInterfaces = true;
+         else                                 port = Integer.parseInt( arg );
+      }
+
+      GradingServer server = new GradingServer( new File(".").getAbsoluteFile(), keyCache );
+      server.start( port, allInterfaces );
+      Runtime.getRuntime().addShutdownHook( new Thread( server::stop ) ); //Ctrl+C saves the hits of the alternates
+      console.print( "Grading service listening on http://localhost:" + server.getPort() + "/grade\n" );
+   }
+
+   /**
+      Start the server, listening only for connections from this computer. Requests are handled
+      on virtual threads
+
+      @param port The port to listen on
+      @throws IOException If the port cannot be opened
+   */
+   public void start( int port ) throws IOException {
+      start( port, false );
+   }
+
+   /**
+      Start the server. Requests are handled on virtual threads
+
+      @param port The port to listen on
+      @param allInterfaces True to accept connections from other computers as well. Anyone who can
+                           reach the port can then read the solutions
+      @throws IOException If the port cannot be opened
+   */
+   public void start( int port, boolean allInterfaces ) throws IOException {
+      //Without this, each response waits about 40ms for the client's delayed ACK (Nagle's algorithm)
+      if( System.getProperty("sun.net.httpserver.nodelay") == null )
+         System.setProperty( "sun.net.httpserver.nodelay", "true" );
+
+      InetSocketAddress address = allInterfaces ? new InetSocketAddress( port )
+                                                : new InetSocketAddress( InetAddress.getLoopbackAddress(), port );
+      server = HttpServer.create( address, 1024 );
+      executor = Executors.newVirtualThreadPerTaskExecutor();
+      server.setExecutor( executor );
+      server.createContext( "/grade", this::handleGrade );
+      server.createContext( "/health", this::handleHealth );
+      server.createContext( "/metrics", this::handleMetrics );
+      server.start();
+
+      if( AlternateOrder.ENABLED ) {
+         saver = Executors.newSingleThreadScheduledExecutor();
+         saver.scheduleWithFixedDelay( this::saveAlternateOrders, SAVE_INTERVAL, SAVE_INTERVAL, TimeUnit.SECONDS );
+      }
+   }
+
+   /**
+      Stop the server, waiting up to one second for requests that are being handled
+   */
+   public void stop() {
+      if( server != null ) server.stop( 1 );
+      if( executor != null ) executor.shutdown();
+      if( saver != null ) saver.shutdownNow();
+      saveAlternateOrders();
+   }
+
+   /**
+      Save the hits of the alternates of each solution file that has been graded, so later runs
+      check them in a better order
+   */
+   public void saveAlternateOrders() {
+      if( !AlternateOrder.ENABLED ) return;
+
+      for( Map.Entry<File, AnswerKey> entry : gradedKeys.entrySet() )
+         entry.getValue().alternateOrder().save( entry.getKey() );
+   }
+
+   /**
+      Get the port that the server is listening on
+
+      @return int The port
+   */
+   public int getPort() {
+      return server.getAddress().getPort();
+   }
+
+   /**
+      Grade one submission
+
+      @param exchange The HTTP request and response
+   */
+   private void handleGrade( HttpExchange exchange ) throws IOException {
+      try {
+         if( !exchange.getRequestMethod().equals("POST") ) {
+            send( exchange, 405, error("Use POST") );
+            return;
+         }
+
+         String text = readBody( exchange );
+         if( text == null ) {
+            send( exchange, 413, error( "The request is larger than " + MAX_BODY_BYTES + " bytes" ) );
+            return;
+         }
+
+         Object body;
+         try {
+            body = Json.parse( text );
+         } catch( IllegalArgumentException e ) {
+            send( exchange, 400, error( "Invalid JSON: " + e.getMessage() ) );
+            return;
+         }
+         if( !(body instanceof Map) ) {
+            send( exchange, 400, error("Expected a JSON object") );
+            return;
+         }
+
+         Map<?, ?> request = (Map<?, ?>)body;
+         Object student = request.get("student");
+         Object assignment = request.get("assignment");
+         GradingSession.Submission submission = GradingSession.Submission.fromJson( student, request.get("answers") );
+         if( !(assignment instanceof String) || submission == null ) {
+            send( exchange, 400, error("Expected \"student\", \"assignment\" and \"answers\"") );
+            return;
+         }
+
+         AnswerKey key = getKey( (String)assignment );
+         if( key == null ) {
+            send( exchange, 404, error( "No solution file for assignment " + assignment ) );
+            return;
+         }
+
+         GradingEvents.StudentGraded event = new GradingEvents.StudentGraded();
+         event.begin();
+         GradingSession.Result result = new GradingSession( getSettings(), key ).grade( submission );
+         event.end();
+         if( event.shouldCommit() ) {
+            event.student = (String)student;
+            event.assignment = (String)assignment;
+            event.score = result.totalPoints;
+            event.maxScore = result.maxPoints;
+            event.commit();
+         }
+
+         send( exchange, result.hasError() ? 422 : 200, result.toJson( (String)assignment ) );
+      } catch( RuntimeException e ) {
+         send( exchange, 500, error( e.toString() ) );
+      }
+   }
+
+   /**
+      Report that the server is running
+
+      @param exchange The HTTP request and response
+   */
+   private void handleHealth( HttpExchange exchange ) throws IOException {
+      send( exchange, 200, "{\"status\":\"ok\",\"keyCache\":" + Json.quote( keyCache.getStats() ) + "}" );
+   }
+
+   /**
+      Report the grading metrics
+
+      @param exchange The HTTP request and response
+   */
+   private void handleMetrics( HttpExchange exchange ) throws IOException {
+      String query = exchange.getRequestURI().getQuery();
+      if( query != null && query.contains("format=json") )
+         send( exchange, 200, GradingMetrics.toJson() );
+      else
+         send( exchange, 200, "text/plain; version=0.0.4; charset=utf-8", GradingMetrics.toPrometheus() );
+   }
+
+   /**
+      Get the compiled key for an assignment
+
+      @param assignment The name of the assignment
+      @return AnswerKey The compiled key, or null if there is no solution file for the assignment
+   */
+   private AnswerKey getKey( String assignment ) {
+      String name = assignment.toLowerCase();
+      File solutionFile = solutionFiles.get( name );
+      if( solutionFile == null || !solutionFile.exists() ) {
+         solutionFile = AnswerKeyCache.findSolutionFile( directory, name );
+         if( solutionFile == null ) return null;
+         solutionFiles.put( name, solutionFile );
+      }
+
+      try {
+         AnswerKey key = keyCache.get( name, solutionFile );
+         if( gradedKeys.get( solutionFile ) != key ) gradedKeys.put( solutionFile, key );
+         return key;
+      } catch( IOException e ) {
+         solutionFiles.remove( name );
+         return null;
+      }
+   }
+
+   /**
+      Get the grading options, checking the settings file for changes at most once a second
+
+      @return GraderSettings The current settings
+   */
+   private GraderSettings getSettings() {
+      long now = System.currentTimeMillis();
+      long next = nextSettingsCheck.get();
+      if( now >= next && nextSettingsCheck.compareAndSet( next, now + SETTINGS_CHECK_INTERVAL ) )
+         settings = settingsSource.current();
+
+      return settings;
+   }
+
+   /**
+      Read the body of a request, up to MAX_BODY_BYTES
+
+      @param exchange The HTTP request and response
+      @return String The body, or null if it is larger than MAX_BODY_BYTES
+   */
+   private static String readBody( HttpExchange exchange ) throws IOException {
+      String length = exchange.getRequestHeaders().getFirst( "Content-Length" );
+      try {
+         if( length != null && Long.parseLong( length.trim() ) > MAX_BODY_BYTES ) return null;
+      } catch( NumberFormatException e ) {
+         return null;
+      }
+
+      InputStream in = exchange.getRequestBody();
+      try {
+         //Read one byte past the limit, to find bodies without a Content-Length that are too large
+         byte[] bytes = in.readNBytes( MAX_BODY_BYTES + 1 );
+         if( bytes.length > MAX_BODY_BYTES ) return null;
+         return new String( bytes, StandardCharsets.UTF_8 );
+      } finally {
+         in.close();
+      }
+   }
+
+   private static void send( HttpExchange exchange, int status, String json ) throws IOException {
+      send( exchange, status, "application/json; charset=utf-8", json );
+   }
+
+   private static void send( HttpExchange exchange, int status, String contentType, String body ) throws IOException {
+      byte[] bytes = body.getBytes( StandardCharsets.UTF_8 );
+      exchange.getResponseHeaders().set( "Content-Type", contentType );
+      exchange.sendResponseHeaders( status, bytes.length );
+      OutputStream out = exchange.getResponseBody();
+      try {
+         out.write( bytes );
+      } finally {
+         out.close();
+      }
+   }
+
+   private static String error( String message ) {
+      return "{\"error\":" + Json.quote( message ) + "}";
+   }
+}
@@ -0,0 +1,477 @@
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+   GradingSession.java
+
+   Grades student submissions against one compiled answer key, using one set of grading options.
+
+   A session has no state that changes while grading, does not read from System.in or write
+   to System.out, and does not use the working directory, so any number of threads may grade
+   with the same session at the same time. The one exception is the optional verdict cache,
+   which remembers which alternate accepted each distinct answer, since most students in a
+   class give one of a few answers to each problem. The cache is safe to share between threads.
+
+   The interactive menu in Grader is one user of this class; other programs can build their
+   own sessions:
+
+      GradingSession session = new GradingSession( settings, AnswerKey.compile( solutionFile ) );
+      GradingSession.Result result = session.grade( GradingSession.Submission.fromLines( "Bob", lines ) );
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see Grader
+   @see AnswerKey
+   @see GraderSettings
+*/
+public final class GradingSession {
+
+   /*DecimalFormat is not thread-safe, so each thread keeps its own*/
+   private static final ThreadLocal<DecimalFormat> TWO_DECIMALS = ThreadLocal.withInitial( () -> new DecimalFormat("#.##") );
+
+   /*Most distinct answers to remember, so that the cache cannot grow without bound*/
+   public static final int MAX_CACHED_VERDICTS = 200000;
+
+   private static final Integer NO_MATCH = -1;
+
+   private final GraderSettings settings;
+   private final AnswerKey key;
+
+   private final KeyProfiler profiler;
+   private final ConcurrentHashMap<String, Integer> verdictCache;
+   private final AtomicInteger cachedVerdicts = new AtomicInteger();
+   private final AtomicLong cacheHits = new AtomicLong();
+   private final AtomicLong cacheMisses = new AtomicLong();
+
+   /**
+      @param settings The grading options
+      @param key The compiled solution file
+   */
+   public GradingSession( GraderSettings settings, AnswerKey key ) {
+      this( settings, key, false );
+   }
+
+   /**
+      @param settings The grading options
+      @param key The compiled solution file
+      @param cacheVerdicts True to remember which alternate accepted each distinct answer
+   */
+   public GradingSession( GraderSettings settings, AnswerKey key, boolean cacheVerdicts ) {
+      this.settings = settings;
+      this.key = key;
+      this.profiler = null;
+      this.verdictCache = cacheVerdicts ? new ConcurrentHashMap<String, Integer>() : null;
+   }
+
+   /**
+      Create a session that times the matching of each problem and alternate. Verdicts are not
+      cached, so that every answer is matched
+
+      @param settings The grading options
+      @param profiler The profiler of the compiled solution file
+   */
+   public GradingSession( GraderSettings settings, KeyProfiler profiler ) {
+      this.settings = settings;
+      this.key = profiler.getKey();
+      this.profiler = profiler;
+      this.verdictCache = null;
+   }
+
+   public GraderSettings getSettings() {
+      return settings;
+   }
+
+   public AnswerKey getKey() {
+      return key;
+   }
+
+   /**
+      Grade a student's submission. Each answer is matched to the solution with the same problem
+      number. If there is no solution with that number, the solution on the same line is used
+
+      @param submission The student's answers
+      @return Result The verdict for each answer and the total score. If the solution file has
+                     a problem that keeps the submission from being graded, the result has an error
+   */
+   public Result grade( Submission submission ) {
+      ArrayList<Verdict> verdicts = new ArrayList<Verdict>();
+      double totalPoints = 0.0, maxPoints = 0.0;
+      int defaultPointValue = settings.defaultPointValue;
+
+      int total = submission.size();
+      for( int i = 0; i < total; i++ ) {
+         String problemNumber = submission.getProblemId(i);
+         String answer = submission.getAnswer(i).trim();
+
+         long time = GradingMetrics.ENABLED ? System.nanoTime() : 0;
+         int problem = key.indexOf( problemNumber );
+         if( GradingMetrics.ENABLED ) time = GradingMetrics.record( GradingMetrics.Phase.LOOKUP, time );
+         if( problem == -1 ) {
+            if( i >= key.problemCount() ) break;
+            problem = i;
+         }
+
+         //Handle if total student problems and total solution problems differ
+         if( answer.isEmpty() ) {
+            maxPoints += 1.0;
+            continue;
+         }
+         if( key.alternateCount( problem ) == 0 )
+            return new Result( submission.getStudentName(), verdicts, totalPoints, maxPoints, Result.MISSING_SOLUTION, problemNumber );
+         if( key.isMalformed( problem ) )
+            return new Result( submission.getStudentName(), verdicts, totalPoints, maxPoints, Result.MALFORMED_SOLUTION, key.problemId( problem ) );
+
+         String studentLine = normalize( answer );
+         if( GradingMetrics.ENABLED ) time = GradingMetrics.record( GradingMetrics.Phase.NORMALIZE, time );
+         GradingEvents.AnswerMatched event = new GradingEvents.AnswerMatched();
+         event.begin();
+         int match = findMatch( problem, studentLine );
+         event.end();
+         if( GradingMetrics.ENABLED ) GradingMetrics.recordMatch( key, match, studentLine, time );
+         if( event.shouldCommit() && GradingEvents.sampleAnswer() ) {
+            event.problem = problemNumber;
+            event.matchPath = GradingMetrics.pathOf( key, match, studentLine ).name().toLowerCase();
+            event.sampled = GradingEvents.ANSWER_SAMPLE_RATE;
+            event.commit();
+         }
+
+         double points = match == -1 ? 0.0 : defaultPointValue * key.credit( match );
+         totalPoints += points;
+         maxPoints += defaultPointValue;
+         verdicts.add( new Verdict( problemNumber, studentLine, match, points, defaultPointValue,
+                                    key.firstSolution( problem ), match == -1 ? "" : key.feedback( match ) ) );
+      }
+
+      return new Result( submission.getStudentName(), verdicts, totalPoints, maxPoints, Result.OK, null );
+   }
+
+   /**
+      Find the alternate that accepts an answer, using the verdict cache if there is one
+
+      @param problem The position of the problem in the key
+      @param studentLine The formatted answer
+      @return int The alternate that accepts the answer, or -1 if none do
+   */
+   private int findMatch( int problem, String studentLine ) {
+      if( profiler != null )
+         return profiler.findMatch( problem, studentLine, settings.listOrderMatters );
+      if( verdictCache == null )
+         return matchInKey( problem, studentLine );
+
+      String cacheKey = problem + "\u0000" + studentLine;
+      Integer cached = verdictCache.get( cacheKey );
+      if( GradingMetrics.ENABLED ) GradingMetrics.recordVerdictCache( cached != null );
+      if( cached != null ) {
+         cacheHits.incrementAndGet();
+         return cached;
+      }
+
+      cacheMisses.incrementAndGet();
+      int match = matchInKey( problem, studentLine );
+      if( cachedVerdicts.get() < MAX_CACHED_VERDICTS && verdictCache.putIfAbsent( cacheKey, match == -1 ? NO_MATCH : match ) == null )
+         cachedVerdicts.incrementAndGet();
+
+      return match;
+   }
+
+   /**
+      Find the alternate that accepts an answer in the key, checking the most common answers
+      first unless adaptive ordering is off
+
+      @param problem The position of the problem in the key
+      @param studentLine The formatted answer
+      @return int The alternate that accepts the answer, or -1 if none do
+      @see AlternateOrder
+   */
+   private int matchInKey( int problem, String studentLine ) {
+      AnswerKey.Response response = new AnswerKey.Response( studentLine );
+      if( AlternateOrder.ENABLED )
+         return key.alternateOrder().findMatch( problem, response, settings.listOrderMatters );
+
+      return key.findMatch( problem, response, settings.listOrderMatters );
+   }
+
+   /**
+      Get the number of answers that were found in the verdict cache
+
+      @return long The number of cache hits, or 0 if there is no cache
+   */
+   public long getCacheHits() {
+      return cacheHits.get();
+   }
+
+   /**
+      Get the number of answers that had to be checked against the answer key
+
+      @return long The number of cache misses, or 0 if there is no cache
+   */
+   public long getCacheMisses() {
+      return cacheMisses.get();
+   }
+
+   /**
+      Format a student answer for grading: lowercase, fractions converted to decimals, and spaces
+      removed, depending on the grading options
+
+      @param answer The student's answer, without the problem number
+      @return String The formatted answer
+   */
+   public String normalize( String answer ) {
+      String studentLine = answer.toLowerCase();
+      studentLine = checkAndConvertToDecimal( studentLine, settings.convertFractionsToDecimals );
+      if( !settings.spacesMatter ) studentLine = studentLine.replaceAll("[\\s]+", "");
+
+      return studentLine;
+   }
+
+   /**
+      Converts a fraction to a decimal, if 'convertFractionsToDecimals' is true. Decimal places are
+      limited to rounding to the hundredths place
+
+      @param solution The solution to check and convert
+      @param convertFractionsToDecimals True to convert fractions, false to leave the solution unchanged
+      @return String The converted solution
+   */
+   public static String checkAndConvertToDecimal( String solution, boolean convertFractionsToDecimals ) {
+      if( convertFractionsToDecimals && solution.contains("/") ) {
+         String[] beforeAfterSlash = solution.split("/");
+         if( beforeAfterSlash.length <= 2 ) {
+            try {
+               double numerator   = Double.parseDouble( beforeAfterSlash[0] );
+               double denominator = Double.parseDouble( beforeAfterSlash[1] );
+               solution = TWO_DECIMALS.get().format( numerator / denominator ) + "";
+            } catch( NumberFormatException | ArrayIndexOutOfBoundsException e ) {
+               //Do nothing
+            }
+         }
+      }
+
+      return solution;
+   }
+
+   /**
+      A student's answers, in the order that they were given
+   */
+   public static final class Submission {
+
+      private final String studentName;
+      private final List<String> problemIds;
+      private final List<String> answers;
+
+      /**
+         @param studentName The name of the student
+         @param problemIds The problem number of each answer, without the period
+         @param answers The answers, without the problem numbers
+      */
+      public Submission( String studentName, List<String> problemIds, List<String> answers ) {
+         this.studentName = studentName;
+         this.problemIds = problemIds;
+         this.answers = answers;
+      }
+
+      /**
+         Read a submission from the lines of a student file, such as "4. (4, 5)"
+
+         @param studentName The name of the student
+         @param lines The lines of the student file
+         @return Submission The submission
+      */
+      public static Submission fromLines( String studentName, List<String> lines ) {
+         ArrayList<String> ids = new ArrayList<String>( lines.size() );
+         ArrayList<String> answers = new ArrayList<String>( lines.size() );
+         for( String line : lines ) {
+            int dot = line.indexOf(".");
+            ids.add( dot == -1 ? "" : line.substring( 0, dot ) );
+            answers.add( line.substring( dot + 1 ) );
+         }
+
+         return new Submission( studentName, ids, answers );
+      }
+
+      /**
+         Build a submission from the "student" and "answers" of a JSON request, as parsed by Json
+
+         @param student The name of the student
+         @param answers Either an object of problem number to answer, or a list of student file lines
+         @return Submission The submission, or null if the request is not formatted correctly
+      */
+      public static Submission fromJson( Object student, Object answers ) {
+         if( !(student instanceof String) ) return null;
+
+         if( answers instanceof Map ) {
+            ArrayList<String> ids = new ArrayList<String>();
+            ArrayList<String> values = new ArrayList<String>();
+            for( Map.Entry<?, ?> entry : ((Map<?, ?>)answers).entrySet() ) {
+               ids.add( String.valueOf( entry.getKey() ) );
+               values.add( entry.getValue() == null ? "" : String.valueOf( entry.getValue() ) );
+            }
+            return new Submission( (String)student, ids, values );
+         }
+
+         if( answers instanceof List ) {
+            ArrayList<String> lines = new ArrayList<String>();
+            for( Object line : (List<?>)answers )
+               lines.add( line == null ? "" : String.valueOf( line ) );
+            return fromLines( (String)student, lines );
+         }
+
+         return null;
+      }
+
+      public String getStudentName()         { return studentName; }
+      public int size()                      { return answers.size(); }
+      public String getProblemId( int i )    { return problemIds.get(i); }
+      public String getAnswer( int i )       { return answers.get(i); }
+   }
+
+   /**
+      The grade given to one answer
+   */
+   public static final class Verdict {
+
+      public final String problemId;
+      public final String answer;
+      public final int    alternate;
+      public final double points;
+      public final double maxPoints;
+      public final String solution;
+      public final String feedback;
+
+      Verdict( String problemId, String answer, int alternate, double points, double maxPoints,
+               String solution, String feedback ) {
+         this.problemId = problemId;
+         this.answer    = answer;
+         this.alternate = alternate;
+         this.points    = points;
+         this.maxPoints = maxPoints;
+         this.solution  = solution;
+         this.feedback  = feedback;
+      }
+
+      public boolean isCorrect() {
+         return alternate != -1 && points >= maxPoints;
+      }
+
+      public boolean isPartialCredit() {
+         return alternate != -1 && points < maxPoints;
+      }
+
+      /**
+         Get the line for this answer in the student's results file
+
+         @return String The line, such as "2. XXX Partial Credit: 0.5/1. Student answer: ..."
+      */
+      public String toResponseLine() {
+         int max = (int)maxPoints;
+         if( alternate == -1 )
+            return problemId + ". XXX Incorrect: 0/" + max + ". Student answer: " + answer + ", Solution: " + solution;
+         if( points < maxPoints )
+            return problemId + ". XXX Partial Credit: " + points + "/" + max + ". Student answer: " + answer +
+                   ", Solution: " + solution + ". " + feedback;
+         return problemId + ". Correct";
+      }
+   }
+
+   /**
+      The graded submission
+   */
+   public static final class Result {
+
+      public static final int OK                 = 0;
+      public static final int MISSING_SOLUTION   = 1; //The solution line for a problem is empty
+      public static final int MALFORMED_SOLUTION = 2; //The tags of a solution line could not be read
+
+      public final String        studentName;
+      public final List<Verdict> verdicts;
+      public final double        totalPoints;
+      public final double        maxPoints;
+      public final int           error;
+      public final String        errorProblemId;
+
+      Result( String studentName, List<Verdict> verdicts, double totalPoints, double maxPoints,
+              int error, String errorProblemId ) {
+         this.studentName    = studentName;
+         this.verdicts       = Collections.unmodifiableList( verdicts );
+         this.totalPoints    = totalPoints;
+         this.maxPoints      = maxPoints;
+         this.error          = error;
+         this.errorProblemId = errorProblemId;
+      }
+
+      public boolean hasError() {
+         return error != OK;
+      }
+
+      /**
+         Get the text of the student's results file: the student's name, a line for each answer,
+         and the score
+
+         @return String The text of the results file
+      */
+      public String toResultsText() {
+         StringBuilder text = new StringBuilder();
+         text.append( capFirstLetter( studentName ) ).append( ":\n" );
+         for( Verdict verdict : verdicts )
+            text.append( verdict.toResponseLine() ).append( "\n" );
+         text.append( "\nScore: " ).append( totalPoints ).append( " / " ).append( maxPoints );
+
+         return text.toString();
+      }
+
+      /**
+         Write this result as one line of JSON, with the score and the verdict for each answer
+
+         @param assignmentName The name of the assignment that was graded
+         @return String The result as JSON
+      */
+      public String toJson( String assignmentName ) {
+         StringBuilder json = new StringBuilder( 64 + verdicts.size() * 96 );
+         json.append( "{\"student\":" );
+         Json.quote( studentName, json );
+         json.append( ",\"assignment\":" );
+         Json.quote( assignmentName, json );
+         if( hasError() ) {
+            json.append( ",\"error\":" ).append( Json.quote( error == MISSING_SOLUTION ? "missing solution" : "malformed solution" ) );
+            json.append( ",\"problem\":" ).append( Json.quote( errorProblemId ) ).append( "}" );
+            return json.toString();
+         }
+
+         json.append( ",\"score\":" ).append( Json.number( totalPoints ) );
+         json.append( ",\"maxScore\":" ).append( Json.number( maxPoints ) );
+         json.append( ",\"verdicts\":[" );
+         for( int i = 0; i < verdicts.size(); i++ ) {
+            Verdict v = verdicts.get(i);
+            if( i > 0 ) json.append( ',' );
+            json.append( "{\"problem\":" );
+            Json.quote( v.problemId, json );
+            json.append( ",\"status\":\"" ).append( v.isCorrect() ? "correct" : v.isPartialCredit() ? "partial" : "incorrect" );
+            json.append( "\",\"points\":" ).append( Json.number( v.points ) );
+            json.append( ",\"maxPoints\":" ).append( Json.number( v.maxPoints ) );
+            json.append( ",\"answer\":" );
+            Json.quote( v.answer, json );
+            json.append( ",\"solution\":" );
+            Json.quote( v.solution, json );
+            if( !v.feedback.isEmpty() && !v.isCorrect() ) {
+               json.append( ",\"feedback\":" );
+               Json.quote( v.feedback, json );
+            }
+            json.append( '}' );
+         }
+         json.append( "]}" );
+
+         return json.toString();
+      }
+
+      private static String capFirstLetter( String token ) {
+         if( token.isEmpty() || !Character.isLetter( token.charAt(0) ) ) return token;
+
+         return String.valueOf( token.charAt(0) ).toUpperCase() + token.substring(1);
+      }
+   }
+}
@@ -0,0 +1,211 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+   Json.java
+
+   A small JSON reader and writer for the grading service and the streaming modes. Objects are
+   read as LinkedHashMaps (so that keys keep their order), arrays as ArrayLists, numbers as Doubles,
+   and true, false and null as Boolean and null. Objects and arrays may be nested at most MAX_DEPTH
+   deep, so that a request cannot overflow the stack of the recursive reader
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see GradingServer
+*/
+public final class Json {
+
+   public static final int MAX_DEPTH = 64;
+
+   private final String text;
+   private int pos = 0;
+   private int depth = 0;
+
+   private Json( String text ) {
+      this.text = text;
+   }
+
+   /**
+      Read a JSON value
+
+      @param text The JSON text
+      @return Object The value: a Map, List, String, Double, Boolean, or null
+      @throws IllegalArgumentException If the text is not valid JSON, or is nested more than MAX_DEPTH deep
+   */
+   public static Object parse( String text ) {
+      Json reader = new Json( text );
+      Object value = reader.readValue();
+      reader.skipWhitespace();
+      if( reader.pos != text.length() ) throw reader.error("Unexpected text after the end");
+
+      return value;
+   }
+
+   /**
+      Write a String as a JSON string, with quotes and escapes
+
+      @param str The String to write
+      @return String The quoted String, or null if str is null
+   */
+   public static String quote( String str ) {
+      if( str == null ) return "null";
+
+      StringBuilder sb = new StringBuilder( str.length() + 2 );
+      quote( str, sb );
+      return sb.toString();
+   }
+
+   /**
+      Append a String as a JSON string, with quotes and escapes
+
+      @param str The String to write
+      @param sb Where to write it
+   */
+   public static void quote( String str, StringBuilder sb ) {
+      sb.append('"');
+      for( int i = 0; i < str.length(); i++ ) {
+         char c = str.charAt(i);
+         switch( c ) {
+            case '"':  sb.append("\\\""); break;
+            case '\\': sb.append("\\\\"); break;
+            case '\n': sb.append("\\n");  break;
+            case '\r': sb.append("\\r");  break;
+            case '\t': sb.append("\\t");  break;
+            default:
+               if( c < 0x20 ) sb.append( String.format( "\\u%04x", (int)c ) );
+               else           sb.append( c );
+         }
+      }
+      sb.append('"');
+   }
+
+   /**
+      Write a number as JSON. Whole numbers are written without a decimal point
+
+      @param value The number
+      @return String The number as JSON
+   */
+   public static String number( double value ) {
+      if( Double.isNaN( value ) || Double.isInfinite( value ) ) return "null";
+      if( value == Math.rint( value ) && Math.abs( value ) < 1e15 ) return Long.toString( (long)value );
+
+      return Double.toString( value );
+   }
+
+   private Object readValue() {
+      skipWhitespace();
+      if( pos >= text.length() ) throw error("Unexpected end");
+
+      char c = text.charAt( pos );
+      if( c == '{' || c == '[' ) {
+         if( depth == MAX_DEPTH ) throw error("Too deeply nested");
+         depth++;
+         Object value = c == '{' ? readObject() : readArray();
+         depth--;
+         return value;
+      }
+      if( c == '"' ) return readString();
+      if( text.startsWith( "true", pos ) )  { pos += 4; return Boolean.TRUE; }
+      if( text.startsWith( "false", pos ) ) { pos += 5; return Boolean.FALSE; }
+      if( text.startsWith( "null", pos ) )  { pos += 4; return null; }
+
+      return readNumber();
+   }
+
+   private Map<String, Object> readObject() {
+      LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
+      pos++; //{
+      skipWhitespace();
+      if( peek() == '}' ) { pos++; return map; }
+
+      while( true ) {
+         skipWhitespace();
+         if( peek() != '"' ) throw error("Expected a name");
+         String name = readString();
+         skipWhitespace();
+         if( peek() != ':' ) throw error("Expected :");
+         pos++;
+         map.put( name, readValue() );
+         skipWhitespace();
+         char c = peek();
+         pos++;
+         if( c == '}' ) return map;
+         if( c != ',' ) throw error("Expected , or }");
+      }
+   }
+
+   private List<Object> readArray() {
+      ArrayList<Object> list = new ArrayList<Object>();
+      pos++; //[
+      skipWhitespace();
+      if( peek() == ']' ) { pos++; return list; }
+
+      while( true ) {
+         list.add( readValue() );
+         skipWhitespace();
+         char c = peek();
+         pos++;
+         if( c == ']' ) return list;
+         if( c != ',' ) throw error("Expected , or ]");
+      }
+   }
+
+   private String readString() {
+      StringBuilder sb = new StringBuilder();
+      pos++; //"
+      while( pos < text.length() ) {
+         char c = text.charAt( pos++ );
+         if( c == '"' ) return sb.toString();
+         if( c != '\\' ) {
+            sb.append( c );
+            continue;
+         }
+
+         if( pos >= text.length() ) break;
+         char escaped = text.charAt( pos++ );
+         switch( escaped ) {
+            case 'n': sb.append('\n'); break;
+            case 'r': sb.append('\r'); break;
+            case 't': sb.append('\t'); break;
+            case 'b': sb.append('\b'); break;
+            case 'f': sb.append('\f'); break;
+            case 'u':
+               if( pos + 4 > text.length() ) throw error("Bad escape");
+               sb.append( (char)Integer.parseInt( text.substring( pos, pos + 4 ), 16 ) );
+               pos += 4;
+               break;
+            default: sb.append( escaped );
+         }
+      }
+
+      throw error("Unterminated string");
+   }
+
+   private Double readNumber() {
+      int start = pos;
+      while( pos < text.length() && "+-0123456789.eE".indexOf( text.charAt( pos ) ) != -1 )
+         pos++;
+
+      try {
+         return Double.parseDouble( text.substring( start, pos ) );
+      } catch( NumberFormatException e ) {
+         throw error("Expected a value");
+      }
+   }
+
+   private char peek() {
+      if( pos >= text.length() ) throw error("Unexpected end");
+      return text.charAt( pos );
+   }
+
+   private void skipWhitespace() {
+      while( pos < text.length() && Character.isWhitespace( text.charAt( pos ) ) )
+         pos++;
+   }
+
+   private IllegalArgumentException error( String message ) {
+      return new IllegalArgumentException( message + " at position " + pos );
+   }
+}
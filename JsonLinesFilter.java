@@ -0,0 +1,161 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+   JsonLinesFilter.java
+
+   Runs Grader as a filter in a shell pipeline: submissions are read from standard input, one JSON
+   object per line, and a line of JSON with the verdicts of each one is written to standard output
+   as soon as it is graded.
+
+      java Grader filter ASSIGNMENT... < submissions.jsonl > results.jsonl
+
+   Each ASSIGNMENT is an assignment name, eg. HW1, or a solution file. The keys are compiled once
+   when the filter starts, and only these assignments are graded. The submissions are in the same
+   form as for GradingServer:
+
+      {"student": "Bob", "assignment": "HW1", "answers": {"1": "23", "2": "Rectangle", "3": "4/5"}}
+
+   The "assignment" may be left out when only one assignment is given. The output is the same as
+   the response of GradingServer, with the number of the input line added first, so that results
+   can be matched to their submissions:
+
+      {"line":1,"student":"Bob","assignment":"HW1","score":3,"maxScore":3,"verdicts":[...]}
+
+   A line that cannot be graded gets a line with its "line" number and an "error" instead.
+
+   Submissions are graded by a pool of threads, so the results come out in the order that they
+   finish, which may not be the order of the input. No more than IN_FLIGHT_PER_THREAD submissions
+   for each thread are read ahead of the ones being written, so the filter uses the same memory for
+   a stream of any length
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see GradingServer
+   @see ResultWriter
+*/
+public class JsonLinesFilter {
+
+   private static final int IN_FLIGHT_PER_THREAD = 4;
+
+   private final TreeMap<String, GradingSession> sessions = new TreeMap<String, GradingSession>( String.CASE_INSENSITIVE_ORDER );
+   private final TreeMap<String, File> solutionFiles = new TreeMap<String, File>( String.CASE_INSENSITIVE_ORDER );
+   private final ResultWriter writer;
+   private final int threads;
+
+   /**
+      @param writer Writes the results to standard output
+      @param threads The number of threads that grade submissions
+   */
+   public JsonLinesFilter( ResultWriter writer, int threads ) {
+      this.writer = writer;
+      this.threads = Math.max( 1, threads );
+   }
+
+   /**
+      Add an assignment to grade
+
+      @param assignment The name of the assignment
+      @param solutionFile Its solution file
+      @param session The grading session for its solution file
+   */
+   public void addAssignment( String assignment, File solutionFile, GradingSession session ) {
+      sessions.put( assignment, session );
+      solutionFiles.put( assignment, solutionFile );
+   }
+
+   /**
+      Grade every line of the input until it ends, then wait for the last results to be written
+
+      @param input The JSON lines of submissions
+      @return long The number of lines that were graded
+      @throws IOException If the input cannot be read
+   */
+   public long run( InputStream input ) throws IOException {
+      int inFlight = threads * IN_FLIGHT_PER_THREAD;
+      Semaphore permits = new Semaphore( inFlight );
+      ExecutorService pool = Executors.newFixedThreadPool( threads );
+      long lineNumber = 0;
+
+      try( BufferedReader in = new BufferedReader( new InputStreamReader( input, StandardCharsets.UTF_8 ) ) ) {
+         for( String line = in.readLine(); line != null; line = in.readLine() ) {
+            lineNumber++;
+            if( line.trim().isEmpty() ) continue;
+
+            permits.acquireUninterruptibly();
+            String text = line;
+            long number = lineNumber;
+            pool.execute( () -> {
+               try {
+                  writer.print( grade( text, number ) + "\n" );
+               } finally {
+                  permits.release();
+               }
+            } );
+         }
+      } finally {
+         permits.acquireUninterruptibly( inFlight );
+         pool.shutdown();
+         writer.flush();
+      }
+
+      return lineNumber;
+   }
+
+   /**
+      Grade one line of the input
+
+      @param line The JSON submission
+      @param lineNumber The number of the line in the input
+      @return String The JSON result, or the error, starting with the line number
+   */
+   private String grade( String line, long lineNumber ) {
+      try {
+         Object body;
+         try {
+            body = Json.parse( line );
+         } catch( IllegalArgumentException e ) {
+            return error( lineNumber, "Invalid JSON: " + e.getMessage() );
+         }
+         if( !(body instanceof Map) ) return error( lineNumber, "Expected a JSON object" );
+
+         Map<?, ?> request = (Map<?, ?>)body;
+         Object assignment = request.get("assignment");
+         if( assignment == null && sessions.size() == 1 ) assignment = sessions.firstKey();
+         GradingSession.Submission submission = GradingSession.Submission.fromJson( request.get("student"), request.get("answers") );
+         if( !(assignment instanceof String) || submission == null )
+            return error( lineNumber, "Expected \"student\", \"assignment\" and \"answers\"" );
+
+         GradingSession session = sessions.get( (String)assignment );
+         if( session == null ) return error( lineNumber, "No solution file for assignment " + assignment );
+
+         String result = session.grade( submission ).toJson( (String)assignment );
+         return "{\"line\":" + lineNumber + "," + result.substring( 1 );
+      } catch( RuntimeException e ) {
+         return error( lineNumber, e.toString() );
+      }
+   }
+
+   private static String error( long lineNumber, String message ) {
+      return "{\"line\":" + lineNumber + ",\"error\":" + Json.quote( message ) + "}";
+   }
+
+   /**
+      Save the hits of the alternates of each assignment, so later runs check them in a better order
+   */
+   public void saveAlternateOrders() {
+      if( !AlternateOrder.ENABLED ) return;
+
+      for( Map.Entry<String, GradingSession> entry : sessions.entrySet() )
+         entry.getValue().getKey().alternateOrder().save( solutionFiles.get( entry.getKey() ) );
+   }
+}
@@ -0,0 +1,140 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+   KeyProfiler.java
+
+   Finds the solution lines that are the most expensive to grade. While a class is graded, the time
+   spent matching each problem, and each alternate solution within it, is added up, along with how
+   many alternates had to be checked before one accepted the answer. The report ranks the problems
+   by their share of the matching time:
+
+      problem 16a: 38.2% of match time, 41.0 alternates scanned avg, 3.1 us per answer (120 answers)
+         alternate 3 "(4,5)": 20.1% of this problem, checked 118 times, accepted 10
+
+   Problems near the top are worth simplifying, or reordering so that the most common answers come
+   first. Run it with
+
+      java Grader profile ASSIGNMENT [NUMBER OF PROBLEMS TO LIST]
+
+   Times are wall-clock times of the grading thread, and include the cost of the timer itself, so
+   they are best compared with each other rather than with a run that is not profiled
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see GradingSession
+*/
+public final class KeyProfiler {
+
+   private static final int ALTERNATES_LISTED = 3;
+   private static final int MAX_VALUE_LENGTH = 30;
+
+   private final AnswerKey key;
+
+   private final AtomicLongArray problemNanos, problemAnswers, problemScanned;
+   private final AtomicLongArray alternateNanos, alternateChecks, alternateAccepts;
+
+   /**
+      @param key The compiled solution file to profile
+   */
+   public KeyProfiler( AnswerKey key ) {
+      this.key = key;
+      problemNanos     = new AtomicLongArray( key.problemCount() );
+      problemAnswers   = new AtomicLongArray( key.problemCount() );
+      problemScanned   = new AtomicLongArray( key.problemCount() );
+      alternateNanos   = new AtomicLongArray( key.alternateCount() );
+      alternateChecks  = new AtomicLongArray( key.alternateCount() );
+      alternateAccepts = new AtomicLongArray( key.alternateCount() );
+   }
+
+   public AnswerKey getKey() {
+      return key;
+   }
+
+   /**
+      Find the first alternate solution of a problem that accepts the student's answer, the same way
+      as AnswerKey.findMatch(...), timing each alternate that is checked
+
+      @param problem The position of the problem in the key
+      @param studentLine The formatted answer
+      @param listOrderMatters False if lists of values may be given in any order
+      @return int The alternate that accepts the answer, or -1 if none do
+   */
+   public int findMatch( int problem, String studentLine, boolean listOrderMatters ) {
+      long start = System.nanoTime();
+      AnswerKey.Response response = new AnswerKey.Response( studentLine );
+      long last = System.nanoTime();
+
+      int first = key.firstAlternate( problem );
+      int end = first + key.alternateCount( problem );
+      int match = -1;
+      for( int alt = first; alt < end; alt++ ) {
+         boolean accepted = key.matches( alt, response, listOrderMatters );
+         long now = System.nanoTime();
+         alternateNanos.addAndGet( alt, now - last );
+         alternateChecks.incrementAndGet( alt );
+         last = now;
+         if( accepted ) {
+            alternateAccepts.incrementAndGet( alt );
+            match = alt;
+            break;
+         }
+      }
+
+      problemNanos.addAndGet( problem, last - start );
+      problemAnswers.incrementAndGet( problem );
+      problemScanned.addAndGet( problem, (match == -1 ? end : match + 1) - first );
+
+      return match;
+   }
+
+   /**
+      Get the ranked report of the problems that took the most matching time
+
+      @param top The number of problems to list
+      @return String The report
+   */
+   public String getReport( int top ) {
+      long totalNanos = 0, totalAnswers = 0;
+      ArrayList<Integer> problems = new ArrayList<Integer>();
+      for( int p = 0; p < key.problemCount(); p++ ) {
+         totalNanos += problemNanos.get(p);
+         totalAnswers += problemAnswers.get(p);
+         if( problemAnswers.get(p) > 0 ) problems.add( p );
+      }
+      problems.sort( Comparator.comparingLong( (Integer p) -> problemNanos.get(p) ).reversed() );
+
+      StringBuilder report = new StringBuilder();
+      report.append( String.format( "%nMatch time by problem, for %d answers (%.1f ms in total):%n%n", totalAnswers, totalNanos / 1e6 ) );
+      if( totalAnswers == 0 ) return report.append( "No answers were graded.\n" ).toString();
+
+      for( int rank = 0; rank < Math.min( top, problems.size() ); rank++ ) {
+         int p = problems.get( rank );
+         long answers = problemAnswers.get(p);
+         report.append( String.format( "problem %s: %.1f%% of match time, %.1f alternates scanned avg, %.1f us per answer (%d answers)%n",
+                                       key.problemId(p), 100.0 * problemNanos.get(p) / totalNanos, (double)problemScanned.get(p) / answers,
+                                       problemNanos.get(p) / 1000.0 / answers, answers ) );
+
+         //The alternates of this problem that took the most time
+         ArrayList<Integer> alternates = new ArrayList<Integer>();
+         int first = key.firstAlternate(p);
+         for( int alt = first; alt < first + key.alternateCount(p); alt++ )
+            if( alternateChecks.get( alt ) > 0 ) alternates.add( alt );
+         alternates.sort( Comparator.comparingLong( (Integer alt) -> alternateNanos.get( alt ) ).reversed() );
+
+         for( int i = 0; i < Math.min( ALTERNATES_LISTED, alternates.size() ); i++ ) {
+            int alt = alternates.get(i);
+            report.append( String.format( "   alternate %d \"%s\": %.1f%% of this problem, checked %d times, accepted %d%n",
+                                          alt - first + 1, shorten( key.value( alt ) ), 100.0 * alternateNanos.get( alt ) / Math.max( 1, problemNanos.get(p) ),
+                                          alternateChecks.get( alt ), alternateAccepts.get( alt ) ) );
+         }
+      }
+
+      return report.toString();
+   }
+
+   private static String shorten( String value ) {
+      return value.length() <= MAX_VALUE_LENGTH ? value : value.substring( 0, MAX_VALUE_LENGTH - 3 ) + "...";
+   }
+}
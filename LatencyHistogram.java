@@ -0,0 +1,121 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+   LatencyHistogram.java
+
+   Counts how long something took, in nanoseconds, so that percentiles can be read back. Values are
+   counted in buckets that double in width with each power of two, with 64 buckets for each power,
+   so every percentile is within about 1.5% of the true value no matter how large it is. The
+   histogram has a fixed size, and any number of threads can record into it at the same time
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see MacroBenchmark
+*/
+public final class LatencyHistogram {
+
+   private static final int SUB_BUCKET_BITS = 6;
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   private static final int LINEAR_LIMIT = SUB_BUCKETS * 2; //Values below this each have their own bucket
+   private static final int BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+   private final AtomicLongArray counts = new AtomicLongArray( BUCKETS );
+   private final AtomicLong count = new AtomicLong();
+   private final AtomicLong sum = new AtomicLong();
+   private final AtomicLong max = new AtomicLong();
+
+   /**
+      Count one value
+
+      @param nanos How long it took, in nanoseconds. Negative values are counted as 0
+   */
+   public void record( long nanos ) {
+      long value = Math.max( 0, nanos );
+      counts.incrementAndGet( indexOf( value ) );
+      count.incrementAndGet();
+      sum.addAndGet( value );
+      max.accumulateAndGet( value, Math::max );
+   }
+
+   public long getCount() {
+      return count.get();
+   }
+
+   public long getMax() {
+      return max.get();
+   }
+
+   /**
+      @return double The mean, in nanoseconds, or 0 if nothing has been counted
+   */
+   public double getMean() {
+      long n = count.get();
+      return n == 0 ? 0.0 : (double)sum.get() / n;
+   }
+
+   /**
+      Get the value that a percentage of the values are at or below
+
+      @param percentile The percentile, from 0.0 to 100.0, eg. 99.9
+      @return long The value, in nanoseconds, or 0 if nothing has been counted
+   */
+   public long getPercentile( double percentile ) {
+      long n = count.get();
+      if( n == 0 ) return 0;
+
+      long rank = Math.max( 1, (long)Math.ceil( percentile / 100.0 * n ) );
+      long seen = 0;
+      for( int i = 0; i < BUCKETS; i++ ) {
+         seen += counts.get(i);
+         if( seen >= rank ) return Math.min( middleOf(i), max.get() );
+      }
+
+      return max.get();
+   }
+
+   /**
+      Write the count, mean, percentiles and max as a JSON object, in microseconds
+
+      @return String The summary
+   */
+   public String toJson() {
+      return "{\"count\":" + getCount() +
+             ",\"mean\":" + Json.number( round( getMean() / 1000.0 ) ) +
+             ",\"p50\":" + Json.number( round( getPercentile( 50 ) / 1000.0 ) ) +
+             ",\"p90\":" + Json.number( round( getPercentile( 90 ) / 1000.0 ) ) +
+             ",\"p99\":" + Json.number( round( getPercentile( 99 ) / 1000.0 ) ) +
+             ",\"p999\":" + Json.number( round( getPercentile( 99.9 ) / 1000.0 ) ) +
+             ",\"max\":" + Json.number( round( getMax() / 1000.0 ) ) + "}";
+   }
+
+   @Override
+   public String toString() {
+      return String.format( "n=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus", getCount(), getMean() / 1000.0,
+                            getPercentile( 50 ) / 1000.0, getPercentile( 90 ) / 1000.0, getPercentile( 99 ) / 1000.0,
+                            getPercentile( 99.9 ) / 1000.0, getMax() / 1000.0 );
+   }
+
+   private static int indexOf( long value ) {
+      if( value < LINEAR_LIMIT ) return (int)value;
+
+      int magnitude = 63 - Long.numberOfLeadingZeros( value ); //at least SUB_BUCKET_BITS + 1
+      int shift = magnitude - SUB_BUCKET_BITS;
+      int subBucket = (int)(value >>> shift) & (SUB_BUCKETS - 1);
+      return LINEAR_LIMIT + (magnitude - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+   }
+
+   private static long middleOf( int index ) {
+      if( index < LINEAR_LIMIT ) return index;
+
+      int magnitude = (index - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+      int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+      int shift = magnitude - SUB_BUCKET_BITS;
+      long lower = (long)(SUB_BUCKETS + subBucket) << shift;
+      return lower + (1L << shift) / 2;
+   }
+
+   private static double round( double value ) {
+      return Math.round( value * 10.0 ) / 10.0;
+   }
+}
@@ -0,0 +1,252 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+   MacroBenchmark.java
+
+   Times the whole grading pipeline over generated classes of increasing size, with an increasing
+   number of grading threads:
+
+      discover   Find the solution file and the student files of the assignment
+      compile    Compile the solution file
+      grade      Read and grade each student file, and write its _Grade.txt file
+      stats      Generate the statistics for the graded files
+
+   Each phase is timed, and the time to grade and to write the results of each student is counted
+   in a LatencyHistogram. The results are printed as a table, with the speed-up over one thread
+   for each class size, and written to a JSON file so that runs of different versions can be
+   compared. Run it with
+
+      java MacroBenchmark [--students 1000,10000] [--problems 50] [--threads 1,2,4] [--seed 1]
+                          [--work DIR] [--out macro-results.json]
+
+   Add -Dgrader.metrics=true to include the GradingMetrics report in the JSON file.
+
+   The classes are written by CorpusGenerator to the work folder (by default, a new temporary folder)
+   and are kept between runs with the same options, so only the first run pays for writing them
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see CorpusGenerator
+   @see LatencyHistogram
+*/
+public class MacroBenchmark {
+
+   private static final String ASSIGNMENT = "Macro";
+
+   /**
+      The timings of one class size and thread count
+   */
+   private static final class Run {
+      int students, problems, threads;
+      long discoverNanos, compileNanos, gradeNanos, statsNanos;
+      final LatencyHistogram gradeLatency = new LatencyHistogram();
+      final LatencyHistogram writeLatency = new LatencyHistogram();
+
+      long totalNanos() {
+         return discoverNanos + compileNanos + gradeNanos + statsNanos;
+      }
+
+      double studentsPerSecond() {
+         return students / (gradeNanos / 1e9);
+      }
+   }
+
+   public static void main( String[] args ) throws Exception {
+      int[] studentCounts = { 1000, 10000 };
+      int[] threadCounts = { 1, 2, 4 };
+      int problems = 50;
+      long seed = 1;
+      File work = null;
+      File out = new File("macro-results.json");
+
+      try {
+         for( int i = 0; i < args.length; i++ ) {
+            String name = args[i];
+            if( i + 1 >= args.length ) throw new IllegalArgumentException( "Missing a value for " + name );
+            String value = args[ ++i ];
+            switch( name ) {
+               case "--students": studentCounts = toInts( value );            break;
+               case "--threads":  threadCounts = toInts( value );             break;
+               case "--problems": problems = Integer.parseInt( value );       break;
+               case "--seed":     seed = Long.parseLong( value );             break;
+               case "--work":     work = new File( value );                   break;
+               case "--out":      out = new File( value );                    break;
+               default: throw new IllegalArgumentException( "Unknown option " + name );
+            }
+         }
+      } catch( IllegalArgumentException e ) {
+         System.out.println( e.getMessage() );
+         System.out.println("Usage: java MacroBenchmark [--students 1000,10000] [--problems 50] [--threads 1,2,4] [--seed 1]\n" +
+                            "                           [--work DIR] [--out macro-results.json]");
+         return;
+      }
+
+      if( work == null ) work = Files.createTempDirectory("grader-macro").toFile();
+      GraderSettings settings = GraderSettings.DEFAULTS;
+      CorpusGenerator generator = new CorpusGenerator( seed, problems, 0.70, 0.12, 0.05, 0.04, 0.02 );
+
+      //Warm up the JIT compiler on a small class, so that the first timed run is not mostly interpreted
+      File warmup = corpus( generator, work, 200, problems, seed );
+      run( warmup, settings, 200, problems, 1 );
+
+      ArrayList<Run> runs = new ArrayList<Run>();
+      for( int students : studentCounts ) {
+         File folder = corpus( generator, work, students, problems, seed );
+         for( int threads : threadCounts ) {
+            Run run = run( folder, settings, students, problems, threads );
+            runs.add( run );
+            System.out.printf( "%8d students x %d problems, %2d threads: %8.1f students/s  (discover %.0f ms, compile %.0f ms, grade %.0f ms, stats %.0f ms)%n",
+                               students, problems, threads, run.studentsPerSecond(), run.discoverNanos / 1e6, run.compileNanos / 1e6,
+                               run.gradeNanos / 1e6, run.statsNanos / 1e6 );
+            System.out.println( "      grade: " + run.gradeLatency );
+            System.out.println( "      write: " + run.writeLatency );
+         }
+      }
+
+      printScaling( runs );
+      Files.write( out.toPath(), toJson( runs, seed ).getBytes( StandardCharsets.UTF_8 ) );
+      System.out.println( "\nResults written to " + out.getPath() );
+   }
+
+   /**
+      Get the folder of a generated class, writing it if it does not exist yet
+
+      @return File The folder
+   */
+   private static File corpus( CorpusGenerator generator, File work, int students, int problems, long seed ) throws IOException {
+      File folder = new File( work, "class-" + students + "x" + problems + "-seed" + seed );
+      File done = new File( folder, ".complete" );
+      if( !done.exists() ) {
+         System.out.println( "Writing " + students + " students to " + folder.getPath() );
+         generator.writeCorpus( folder, ASSIGNMENT, students );
+         done.createNewFile();
+      }
+      return folder;
+   }
+
+   /**
+      Grade a generated class once, timing each phase
+
+      @param folder The folder of the class
+      @param settings The grading options
+      @param students The number of students in the class
+      @param problems The number of problems
+      @param threads The number of threads to grade with
+      @return Run The timings
+   */
+   private static Run run( File folder, GraderSettings settings, int students, int problems, int threads ) throws Exception {
+      Run run = new Run();
+      run.students = students;
+      run.problems = problems;
+      run.threads = threads;
+
+      //Results from an earlier run are removed first, so that every run writes new files
+      for( File file : folder.listFiles() )
+         if( file.getName().endsWith("_Grade.txt") ) file.delete();
+
+      long start = System.nanoTime();
+      File solutionFile = AnswerKeyCache.findSolutionFile( folder, ASSIGNMENT );
+      List<File> studentFiles = Grader.findStudentFiles( folder, ASSIGNMENT );
+      run.discoverNanos = System.nanoTime() - start;
+      if( solutionFile == null || studentFiles.size() != students )
+         throw new IllegalStateException( "Expected " + students + " student files in " + folder + ", found " + studentFiles.size() );
+
+      start = System.nanoTime();
+      GradingSession session = new GradingSession( settings, AnswerKey.compile( solutionFile ) );
+      run.compileNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      AtomicInteger next = new AtomicInteger();
+      ExecutorService pool = Executors.newFixedThreadPool( threads );
+      try {
+         ArrayList<Future<?>> workers = new ArrayList<Future<?>>();
+         for( int t = 0; t < threads; t++ ) {
+            workers.add( pool.submit( () -> {
+               for( int i = next.getAndIncrement(); i < studentFiles.size(); i = next.getAndIncrement() ) {
+                  File studentFile = studentFiles.get(i);
+                  long graded = System.nanoTime();
+                  GradingSession.Result result = Grader.gradeStudentFile( studentFile, session );
+                  long written = System.nanoTime();
+                  Grader.writeResultsFile( studentFile, result.toResultsText() );
+                  long done = System.nanoTime();
+                  run.gradeLatency.record( written - graded );
+                  run.writeLatency.record( done - written );
+               }
+            } ) );
+         }
+         for( Future<?> worker : workers )
+            worker.get();
+      } finally {
+         pool.shutdown();
+      }
+      run.gradeNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      Grader.getStatistics( folder, ASSIGNMENT, settings.defaultPointValue );
+      run.statsNanos = System.nanoTime() - start;
+
+      return run;
+   }
+
+   /**
+      Print the students graded per second for each class size and thread count, and the speed-up
+      over the smallest thread count of that class size
+   */
+   private static void printScaling( List<Run> runs ) {
+      System.out.println("\nScaling (students/s, speed-up)");
+      Run base = null;
+      for( Run run : runs ) {
+         if( base == null || base.students != run.students ) base = run;
+         System.out.printf( "%8d students %2d threads: %10.1f  x%.2f%n", run.students, run.threads, run.studentsPerSecond(),
+                            run.studentsPerSecond() / base.studentsPerSecond() );
+      }
+   }
+
+   private static String toJson( List<Run> runs, long seed ) {
+      StringBuilder json = new StringBuilder();
+      json.append( "{\"java\":" ).append( Json.quote( System.getProperty("java.version") ) )
+          .append( ",\"processors\":" ).append( Runtime.getRuntime().availableProcessors() )
+          .append( ",\"seed\":" ).append( seed )
+          .append( ",\"runs\":[" );
+      for( int i = 0; i < runs.size(); i++ ) {
+         Run run = runs.get(i);
+         if( i > 0 ) json.append(',');
+         json.append( "\n{\"students\":" ).append( run.students )
+             .append( ",\"problems\":" ).append( run.problems )
+             .append( ",\"threads\":" ).append( run.threads )
+             .append( ",\"studentsPerSecond\":" ).append( Json.number( Math.round( run.studentsPerSecond() * 10 ) / 10.0 ) )
+             .append( ",\"phasesMs\":{\"discover\":" ).append( ms( run.discoverNanos ) )
+             .append( ",\"compile\":" ).append( ms( run.compileNanos ) )
+             .append( ",\"grade\":" ).append( ms( run.gradeNanos ) )
+             .append( ",\"stats\":" ).append( ms( run.statsNanos ) )
+             .append( ",\"total\":" ).append( ms( run.totalNanos() ) ).append( '}' )
+             .append( ",\"gradeLatencyUs\":" ).append( run.gradeLatency.toJson() )
+             .append( ",\"writeLatencyUs\":" ).append( run.writeLatency.toJson() ).append( '}' );
+      }
+      json.append( "\n]" );
+      if( GradingMetrics.ENABLED ) json.append( ",\n\"metrics\":" ).append( GradingMetrics.toJson() );
+      json.append( "}\n" );
+      return json.toString();
+   }
+
+   private static String ms( long nanos ) {
+      return Json.number( Math.round( nanos / 1e4 ) / 100.0 );
+   }
+
+   private static int[] toInts( String list ) {
+      String[] tokens = list.split(",");
+      int[] values = new int[ tokens.length ];
+      for( int i = 0; i < tokens.length; i++ )
+         values[i] = Integer.parseInt( tokens[i].trim() );
+      return values;
+   }
+}
@@ -0,0 +1,437 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+   ProblemIndex.java
+
+   A random-access index of problem number -> byte offset and length for a solution,
+   problem bank, or student response text file. Every line of these files begins with
+   the problem number followed by a period, eg. "16a. 1/3, -7/2 & -1/3, 7/2;0.5"
+
+   Large files (see INDEX_THRESHOLD) have their index saved as a sidecar file in the
+   .grader folder next to the text file, so that later runs can seek straight to a
+   problem without scanning the file. The sidecar stores the size, the last modified
+   time, and a CRC32 checksum of the text file. If the size or time has changed, the
+   checksum is recomputed, and the index is rebuilt if the checksum does not match.
+
+   Small files are indexed in memory only
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see Grader
+*/
+public class ProblemIndex {
+
+   /*Files smaller than this many bytes are not given a sidecar index file*/
+   public static final long INDEX_THRESHOLD = 64 * 1024;
+
+   public static final String SIDECAR_FOLDER_NAME = ".grader";
+
+   private static final int INDEX_MAGIC   = 0x47494458; //"GIDX"
+   private static final int INDEX_VERSION = 1;
+
+   private final File file;
+   private long   fileLength;
+   private long   lastModified;
+   private long   checksum;
+
+   private String[] problemIds;
+   private long[]   offsets;
+   private int[]    lengths;
+   private final HashMap<String, Integer> positions = new HashMap<String, Integer>();
+
+   private ProblemIndex( File file ) {
+      this.file = file;
+   }
+
+   /**
+      Get the index for the given text file, loading the sidecar index if it is still
+      consistent with the file, and building (and saving) a new index otherwise
+
+      @param file The text file to index
+      @return ProblemIndex The index for the file
+      @throws IOException If the file cannot be read
+   */
+   public static ProblemIndex of( File file ) throws IOException {
+      ProblemIndex index = new ProblemIndex( file );
+      long length = file.length();
+      long modified = file.lastModified();
+
+      boolean usesSidecar = length >= INDEX_THRESHOLD;
+      if( usesSidecar && index.loadSidecar() ) {
+         if( index.fileLength == length && index.lastModified == modified )
+            return index;
+
+         //Touched, copied, or edited. Only trust the index if the contents are the same
+         if( index.fileLength == length && index.checksum == checksumOf( file ) ) {
+            index.lastModified = modified;
+            index.saveSidecar();
+            return index;
+         }
+      }
+
+      index.build();
+      if( usesSidecar ) index.saveSidecar();
+
+      return index;
+   }
+
+   /**
+      Delete the sidecar index of a file, if there is one. Called whenever a file is rewritten
+      without going through replaceLine(...)
+
+      @param file The text file whose index is no longer valid
+   */
+   public static void invalidate( File file ) {
+      File sidecar = getSidecarFile( file );
+      if( sidecar.exists() ) sidecar.delete();
+   }
+
+   /**
+      Get the sidecar file that stores the index of the given text file
+
+      @param file The text file
+      @return File The sidecar index file, which may or may not exist
+   */
+   private static File getSidecarFile( File file ) {
+      File folder = new File( file.getAbsoluteFile().getParentFile(), SIDECAR_FOLDER_NAME );
+      return new File( folder, file.getName() + ".idx" );
+   }
+
+   /**
+      Get the list of problem numbers in the file, in the order that they appear
+
+      @return String[] The list of problem numbers (does not include periods)
+   */
+   public String[] problemIds() {
+      return Arrays.copyOf( problemIds, problemIds.length );
+   }
+
+   /**
+      Get the total number of lines in the file
+
+      @return int The total number of lines
+   */
+   public int size() {
+      return problemIds.length;
+   }
+
+   /**
+      Get the position of the first line with the given problem number
+
+      @param problemId The problem number, without the period
+      @return int The position of the line in the file, or -1 if there is no such problem
+   */
+   public int indexOf( String problemId ) {
+      Integer position = positions.get( problemId );
+      return position == null ? -1 : position;
+   }
+
+   /**
+      Read one line of the file, including the problem number
+
+      @param problemId The problem number of the line
+      @return String The line, or null if there is no such problem
+      @throws IOException If the file cannot be read
+   */
+   public String readLine( String problemId ) throws IOException {
+      int position = indexOf( problemId );
+      if( position == -1 ) return null;
+
+      return readLine( position );
+   }
+
+   /**
+      Read one line of the file, including the problem number
+
+      @param position The position of the line in the file
+      @return String The line
+      @throws IOException If the file cannot be read
+   */
+   public String readLine( int position ) throws IOException {
+      RandomAccessFile raf = new RandomAccessFile( file, "r" );
+      try {
+         return readLine( raf, position );
+      } finally {
+         raf.close();
+      }
+   }
+
+   /**
+      Read only the lines with the given problem numbers. The file is opened once and the
+      lines are read in the order that they appear in the file. This is used for grading
+      against a subset of a problem bank, such as a quiz drawn from the bank
+
+      @param requestedIds The problem numbers of the lines to read
+      @return Map<String, String> The lines, by problem number. Problem numbers that are not
+                                  in the file are left out
+      @throws IOException If the file cannot be read
+   */
+   public Map<String, String> readLines( Collection<String> requestedIds ) throws IOException {
+      ArrayList<Integer> wanted = new ArrayList<Integer>();
+      for( String id : requestedIds ) {
+         int position = indexOf( id );
+         if( position != -1 && !wanted.contains( position ) ) wanted.add( position );
+      }
+      wanted.sort( null );
+
+      LinkedHashMap<String, String> lines = new LinkedHashMap<String, String>();
+      RandomAccessFile raf = new RandomAccessFile( file, "r" );
+      try {
+         for( int position : wanted )
+            lines.put( problemIds[ position ], readLine( raf, position ) );
+      } finally {
+         raf.close();
+      }
+
+      return lines;
+   }
+
+   /**
+      Replace one line of the file in place. If the new line has the same length as the old
+      line, only those bytes are overwritten. Otherwise, only the part of the file after the
+      line is moved. The index is updated to match
+
+      @param position The position of the line in the file
+      @param line The new text of the line, including the problem number
+      @throws IOException If the file cannot be written to
+   */
+   public void replaceLine( int position, String line ) throws IOException {
+      byte[] newBytes = line.getBytes( Charset.defaultCharset() );
+      long start = offsets[ position ];
+      long end = start + lengths[ position ];
+      int delta = newBytes.length - lengths[ position ];
+
+      RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+      try {
+         if( delta == 0 ) {
+            raf.seek( start );
+            raf.write( newBytes );
+         } else {
+            byte[] tail = new byte[ (int)(raf.length() - end) ];
+            raf.seek( end );
+            raf.readFully( tail );
+            raf.seek( start );
+            raf.write( newBytes );
+            raf.write( tail );
+            raf.setLength( start + newBytes.length + tail.length );
+         }
+      } finally {
+         raf.close();
+      }
+
+      //Update index
+      String oldId = problemIds[ position ];
+      problemIds[ position ] = line.split("\\.")[0];
+      lengths[ position ] = newBytes.length;
+      for( int i = position + 1; i < offsets.length; i++ )
+         offsets[i] += delta;
+      if( !oldId.equals( problemIds[ position ] ) ) rebuildPositions();
+
+      fileLength = file.length();
+      lastModified = file.lastModified();
+      if( fileLength >= INDEX_THRESHOLD ) {
+         checksum = checksumOf( file );
+         saveSidecar();
+      } else {
+         invalidate( file );
+      }
+   }
+
+   /**
+      Read one line of the file using an open file
+
+      @param raf The open file
+      @param position The position of the line in the file
+      @return String The line
+      @throws IOException If the file cannot be read
+   */
+   private String readLine( RandomAccessFile raf, int position ) throws IOException {
+      byte[] bytes = new byte[ lengths[ position ] ];
+      raf.seek( offsets[ position ] );
+      raf.readFully( bytes );
+      return new String( bytes, Charset.defaultCharset() );
+   }
+
+   /**
+      Build the index by scanning the bytes of the file once. Lines may end in \n or \r\n.
+      The checksum is calculated during the same pass
+   */
+   private void build() throws IOException {
+      ArrayList<String> ids = new ArrayList<String>();
+      ArrayList<Long> lineOffsets = new ArrayList<Long>();
+      ArrayList<Integer> lineLengths = new ArrayList<Integer>();
+
+      CRC32 crc = new CRC32();
+      ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+      long position = 0;
+      long lineStart = 0;
+
+      InputStream in = new BufferedInputStream( new FileInputStream( file ), 1 << 16 );
+      try {
+         byte[] buffer = new byte[ 1 << 16 ];
+         int read;
+         while( (read = in.read( buffer )) != -1 ) {
+            crc.update( buffer, 0, read );
+            for( int i = 0; i < read; i++, position++ ) {
+               if( buffer[i] == '\n' ) {
+                  addEntry( ids, lineOffsets, lineLengths, lineBytes, lineStart );
+                  lineStart = position + 1;
+               } else {
+                  lineBytes.write( buffer[i] );
+               }
+            }
+         }
+      } finally {
+         in.close();
+      }
+
+      //Last line has no line break
+      if( position > lineStart )
+         addEntry( ids, lineOffsets, lineLengths, lineBytes, lineStart );
+
+      problemIds = ids.toArray( new String[ ids.size() ] );
+      offsets = new long[ lineOffsets.size() ];
+      lengths = new int[ lineLengths.size() ];
+      for( int i = 0; i < offsets.length; i++ ) {
+         offsets[i] = lineOffsets.get(i);
+         lengths[i] = lineLengths.get(i);
+      }
+
+      fileLength = position;
+      lastModified = file.lastModified();
+      checksum = crc.getValue();
+      rebuildPositions();
+   }
+
+   /**
+      Add the line that was just scanned to the lists being built
+   */
+   private static void addEntry( ArrayList<String> ids, ArrayList<Long> lineOffsets, ArrayList<Integer> lineLengths,
+                                 ByteArrayOutputStream lineBytes, long lineStart ) {
+      byte[] bytes = lineBytes.toByteArray();
+      int length = bytes.length;
+      if( length > 0 && bytes[ length - 1 ] == '\r' ) length--;
+
+      String line = new String( bytes, 0, length, Charset.defaultCharset() );
+      ids.add( line.split("\\.")[0] );
+      lineOffsets.add( lineStart );
+      lineLengths.add( length );
+      lineBytes.reset();
+   }
+
+   /**
+      Map each problem number to the first line that has that number
+   */
+   private void rebuildPositions() {
+      positions.clear();
+      for( int i = problemIds.length - 1; i >= 0; i-- )
+         positions.put( problemIds[i], i );
+   }
+
+   /**
+      Load the sidecar index, if there is one
+
+      @return boolean True if the sidecar was loaded, false if it is missing, unreadable or
+                      from a different version
+   */
+   private boolean loadSidecar() {
+      File sidecar = getSidecarFile( file );
+      if( !sidecar.exists() ) return false;
+
+      try {
+         DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( sidecar ) ) );
+         try {
+            if( in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION ) return false;
+            fileLength = in.readLong();
+            lastModified = in.readLong();
+            checksum = in.readLong();
+            int total = in.readInt();
+            problemIds = new String[ total ];
+            offsets = new long[ total ];
+            lengths = new int[ total ];
+            for( int i = 0; i < total; i++ ) {
+               problemIds[i] = in.readUTF();
+               offsets[i] = in.readLong();
+               lengths[i] = in.readInt();
+            }
+         } finally {
+            in.close();
+         }
+      } catch( IOException e ) {
+         return false; //Rebuild instead
+      }
+
+      rebuildPositions();
+      return true;
+   }
+
+   /**
+      Save the index as a sidecar file. Failures are not fatal, since the index can always
+      be rebuilt from the text file
+   */
+   private void saveSidecar() {
+      File sidecar = getSidecarFile( file );
+      sidecar.getParentFile().mkdirs();
+
+      try {
+         DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( sidecar ) ) );
+         try {
+            out.writeInt( INDEX_MAGIC );
+            out.writeInt( INDEX_VERSION );
+            out.writeLong( fileLength );
+            out.writeLong( lastModified );
+            out.writeLong( checksum );
+            out.writeInt( problemIds.length );
+            for( int i = 0; i < problemIds.length; i++ ) {
+               out.writeUTF( problemIds[i] );
+               out.writeLong( offsets[i] );
+               out.writeInt( lengths[i] );
+            }
+         } finally {
+            out.close();
+         }
+      } catch( IOException e ) {
+         sidecar.delete();
+      }
+   }
+
+   /**
+      Calculate the CRC32 checksum of a file
+
+      @param file The file to check
+      @return long The checksum
+      @throws IOException If the file cannot be read
+   */
+   public static long checksumOf( File file ) throws IOException {
+      CRC32 crc = new CRC32();
+      InputStream in = new FileInputStream( file );
+      try {
+         byte[] buffer = new byte[ 1 << 16 ];
+         int read;
+         while( (read = in.read( buffer )) != -1 )
+            crc.update( buffer, 0, read );
+      } finally {
+         in.close();
+      }
+
+      return crc.getValue();
+   }
+}
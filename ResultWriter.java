@@ -0,0 +1,259 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+   ResultWriter.java
+
+   The one thread that writes results files and prints to the console while other threads grade.
+   Grading threads hand their results to the writer and go back to grading, so matching answers and
+   writing files happen at the same time, and no grading thread waits on the lock of System.out.
+
+   Work is passed through a queue of CAPACITY items. When the writer falls that far behind, the
+   threads that hand it work wait until there is room again, so a slow disk cannot fill memory with
+   results that are not written yet. Everything is done in the order that it was handed over. The
+   writer takes everything that is waiting at once, and prints all of its console text with one
+   call, instead of one call for each line.
+
+   A results file that cannot be written does not stop the others. The reason is kept, and is
+   returned by flush() or takeFailures(), so that it can be reported with the results
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see BatchGrader
+   @see FolderWatcher
+*/
+public class ResultWriter {
+
+   public static final int DEFAULT_CAPACITY = 1024;
+
+   /*The marker that stops the writer*/
+   private static final Task STOP = new Task( null, null, null, null );
+
+   private final ArrayBlockingQueue<Task> queue;
+   private final PrintStream console;
+   private final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<String>();
+   private final Thread thread;
+   private volatile boolean closed = false;
+
+   /**
+      @param console Where console text is printed
+   */
+   public ResultWriter( PrintStream console ) {
+      this( console, DEFAULT_CAPACITY );
+   }
+
+   /**
+      @param console Where console text is printed
+      @param capacity The number of items that may wait to be written before the threads that hand
+                      over more items have to wait
+   */
+   public ResultWriter( PrintStream console, int capacity ) {
+      this.console = console;
+      this.queue = new ArrayBlockingQueue<Task>( Math.max( 1, capacity ) );
+      this.thread = new Thread( this::run, "ResultWriter" );
+      thread.setDaemon( true );
+      thread.start();
+   }
+
+   /**
+      Something for the writer to do
+   */
+   interface Write {
+      void run() throws IOException;
+   }
+
+   /**
+      One item of the queue: console text, or a write to a file, or a marker that the writer has
+      reached (flush) or should stop at (close)
+   */
+   private static final class Task {
+      final String text;
+      final Write write;
+      final String target;
+      final CountDownLatch reached;
+
+      Task( String text, Write write, String target, CountDownLatch reached ) {
+         this.text = text;
+         this.write = write;
+         this.target = target;
+         this.reached = reached;
+      }
+   }
+
+   /**
+      Print text to the console, after everything handed over before it
+
+      @param text The text, with its own line breaks
+   */
+   public void print( String text ) {
+      submit( new Task( text, null, null, null ) );
+   }
+
+   /**
+      Print text to another stream, such as a log file, after everything handed over before it.
+      The stream is not flushed
+
+      @param stream The stream
+      @param text The text, with its own line breaks
+   */
+   public void print( PrintStream stream, String text ) {
+      submit( new Task( null, () -> stream.print( text ), null, null ) );
+   }
+
+   /**
+      Write the results of a student to NAME_ASSIGNMENT_Grade.txt, next to their student file
+
+      @param studentFile The student response text file, eg. Bob_HW1.txt
+      @param resultsText The results, from GradingSession.Result.toResultsText()
+   */
+   public void writeResultsFile( File studentFile, String resultsText ) {
+      submit( new Task( null, () -> Grader.saveResultsFile( studentFile, resultsText ), studentFile.getName(), null ) );
+   }
+
+   /**
+      Write the results of a student to a results file for every student. Only the writer writes
+      to the output until flush() returns, so it does not have to be safe for more than one thread
+
+      @param output The results file
+      @param assignment The name of the assignment
+      @param studentFileName The name of the student file, eg. Bob_HW1.txt
+      @param result The graded student file
+   */
+   public void write( ResultsOutput output, String assignment, String studentFileName, GradingSession.Result result ) {
+      submit( new Task( null, () -> {
+         long start = GradingMetrics.ENABLED ? System.nanoTime() : 0;
+         output.write( assignment, studentFileName, result );
+         if( GradingMetrics.ENABLED ) GradingMetrics.record( GradingMetrics.Phase.WRITE, start );
+      }, studentFileName, null ) );
+   }
+
+   /**
+      Do some other writing, after everything handed over before it
+
+      @param target What is written, eg. the name of the file, for the failure if it fails
+      @param write The writing to do
+   */
+   public void run( String target, Write write ) {
+      submit( new Task( null, write, target, null ) );
+   }
+
+   /**
+      Wait for everything that was handed over so far to be written
+
+      @return List<String> Why each write that failed since the failures were last taken failed
+   */
+   public List<String> flush() {
+      CountDownLatch reached = new CountDownLatch( 1 );
+      if( submit( new Task( null, null, null, reached ) ) ) {
+         try {
+            reached.await();
+         } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+         }
+      }
+
+      return takeFailures();
+   }
+
+   /**
+      Take the failures so far, without waiting for the writer
+
+      @return List<String> Why each write that failed since the failures were last taken failed
+   */
+   public List<String> takeFailures() {
+      ArrayList<String> taken = new ArrayList<String>();
+      for( String failure = failures.poll(); failure != null; failure = failures.poll() )
+         taken.add( failure );
+
+      return taken;
+   }
+
+   /**
+      Write everything that was handed over, then stop the writer. Failures that were not taken
+      are printed to the console
+   */
+   public void close() {
+      if( closed ) return;
+      flush();
+      closed = true;
+      submit( STOP );
+      try {
+         thread.join();
+      } catch( InterruptedException e ) {
+         Thread.currentThread().interrupt();
+      }
+
+      for( String failure : takeFailures() )
+         console.println( "Error! Could not write " + failure );
+      console.flush();
+   }
+
+   /**
+      Hand an item to the writer, waiting for room in the queue if it is full
+
+      @return boolean True if the item was handed over
+   */
+   private boolean submit( Task task ) {
+      if( closed && task != STOP ) throw new IllegalStateException( "The result writer is closed" );
+
+      try {
+         queue.put( task );
+         return true;
+      } catch( InterruptedException e ) {
+         Thread.currentThread().interrupt();
+         if( task.target != null ) failures.add( task.target + ": interrupted before it was written" );
+         return false;
+      }
+   }
+
+   /**
+      Take everything that is waiting, write it in order, and print its console text at once
+   */
+   private void run() {
+      ArrayList<Task> batch = new ArrayList<Task>();
+      StringBuilder text = new StringBuilder();
+      while( true ) {
+         try {
+            batch.add( queue.take() );
+         } catch( InterruptedException e ) {
+            return;
+         }
+         queue.drainTo( batch );
+
+         boolean stop = false;
+         for( Task task : batch ) {
+            if( task.text != null ) {
+               text.append( task.text );
+            } else if( task.write != null ) {
+               try {
+                  task.write.run();
+               } catch( IOException | RuntimeException e ) {
+                  failures.add( task.target + ": " + (e.getMessage() == null ? e.toString() : e.getMessage()) );
+               }
+            } else {
+               //Console text that came before a marker is printed before the marker is reached
+               printText( text );
+               if( task == STOP ) stop = true;
+               else               task.reached.countDown();
+            }
+         }
+         printText( text );
+         batch.clear();
+
+         if( stop ) return;
+      }
+   }
+
+   private void printText( StringBuilder text ) {
+      if( text.length() == 0 ) return;
+      console.print( text );
+      console.flush();
+      text.setLength( 0 );
+   }
+}
@@ -0,0 +1,202 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+   ResultsOutput.java
+
+   Writes the results of a whole batch into one file, instead of one _Grade.txt file per student.
+   The format is chosen by the extension of the file name:
+
+      .jsonl   One line of JSON for each student, with the score and the verdict for each answer
+      .csv     One row for each answer: assignment, student, problem, status, points, max points,
+               answer, solution and feedback
+      .zip     A compressed archive of the NAME_ASSIGNMENT_Grade.txt report of each student
+
+   Everything is written in order, by one thread, through one buffered channel to a temporary file
+   next to the output file. close() moves the temporary file into place, replacing the output of an
+   earlier run, so that an interrupted run never leaves half of a results file behind. Each output
+   has its own uniquely named temporary file, so two runs writing the same results file cannot
+   truncate each other's
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+   @see BatchGrader
+*/
+public abstract class ResultsOutput {
+
+   private static final int BUFFER_SIZE = 256 * 1024;
+
+   private final File file;
+   private final File temp;
+   protected final OutputStream out;
+
+   private ResultsOutput( File file ) throws IOException {
+      this.file = file.getAbsoluteFile();
+      this.temp = Files.createTempFile( this.file.getParentFile().toPath(), this.file.getName(), ".tmp" ).toFile();
+      FileChannel channel;
+      try {
+         channel = FileChannel.open( temp.toPath(), StandardOpenOption.WRITE );
+      } catch( IOException e ) {
+         temp.delete();
+         throw e;
+      }
+      this.out = new BufferedOutputStream( Channels.newOutputStream( channel ), BUFFER_SIZE );
+   }
+
+   /**
+      Open a results file, in the format of its extension
+
+      @param file The results file, ending in .jsonl, .csv or .zip
+      @return ResultsOutput The output
+      @throws IOException If the file cannot be created
+      @throws IllegalArgumentException If the extension is not one of the formats
+   */
+   public static ResultsOutput open( File file ) throws IOException {
+      String name = file.getName().toLowerCase();
+      if( name.endsWith(".jsonl") ) return new JsonLines( file );
+      if( name.endsWith(".csv") )   return new Csv( file );
+      if( name.endsWith(".zip") )   return new Archive( file );
+
+      throw new IllegalArgumentException( "Results files must end in .jsonl, .csv or .zip: " + file.getName() );
+   }
+
+   public File getFile() {
+      return file;
+   }
+
+   /**
+      Write the results of one student
+
+      @param assignment The name of the assignment
+      @param studentFileName The name of the student file, eg. Bob_HW1.txt
+      @param result The graded student file
+      @throws IOException If the results cannot be written
+   */
+   public abstract void write( String assignment, String studentFileName, GradingSession.Result result ) throws IOException;
+
+   /**
+      Finish the results file and move it into place, replacing any earlier results file
+
+      @throws IOException If the file cannot be written or moved
+   */
+   public void close() throws IOException {
+      try {
+         finish();
+         out.close();
+         try {
+            Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+         } catch( AtomicMoveNotSupportedException e ) {
+            Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+         }
+      } finally {
+         //Only left if the file could not be finished or moved
+         Files.deleteIfExists( temp.toPath() );
+      }
+   }
+
+   /**
+      Stop without replacing the results file, and remove the temporary file
+   */
+   public void abort() {
+      try {
+         out.close();
+      } catch( IOException e ) {
+         //The temporary file is removed either way
+      }
+      temp.delete();
+   }
+
+   /**
+      Write anything that has to come at the end of the file
+   */
+   protected void finish() throws IOException {}
+
+   protected void print( String text ) throws IOException {
+      out.write( text.getBytes( StandardCharsets.UTF_8 ) );
+   }
+
+   /**
+      One line of JSON for each student
+   */
+   private static final class JsonLines extends ResultsOutput {
+      JsonLines( File file ) throws IOException {
+         super( file );
+      }
+
+      public void write( String assignment, String studentFileName, GradingSession.Result result ) throws IOException {
+         print( result.toJson( assignment ) );
+         print( "\n" );
+      }
+   }
+
+   /**
+      One row for each answer, with a header row
+   */
+   private static final class Csv extends ResultsOutput {
+      Csv( File file ) throws IOException {
+         super( file );
+         print( "assignment,student,problem,status,points,maxPoints,answer,solution,feedback\n" );
+      }
+
+      public void write( String assignment, String studentFileName, GradingSession.Result result ) throws IOException {
+         StringBuilder rows = new StringBuilder( 64 * (result.verdicts.size() + 1) );
+         for( GradingSession.Verdict v : result.verdicts ) {
+            rows.append( quote( assignment ) ).append( ',' ).append( quote( result.studentName ) ).append( ',' )
+                .append( quote( v.problemId ) ).append( ',' )
+                .append( v.isCorrect() ? "correct" : v.isPartialCredit() ? "partial" : "incorrect" ).append( ',' )
+                .append( Json.number( v.points ) ).append( ',' ).append( Json.number( v.maxPoints ) ).append( ',' )
+                .append( quote( v.answer ) ).append( ',' ).append( quote( v.solution ) ).append( ',' )
+                .append( quote( v.isCorrect() ? "" : v.feedback ) ).append( '\n' );
+         }
+         print( rows.toString() );
+      }
+
+      /**
+         Quote a CSV field if it has a comma, a quote or a line break
+      */
+      private static String quote( String field ) {
+         if( field.indexOf(',') == -1 && field.indexOf('"') == -1 && field.indexOf('\n') == -1 && field.indexOf('\r') == -1 )
+            return field;
+         return "\"" + field.replace( "\"", "\"\"" ) + "\"";
+      }
+   }
+
+   /**
+      A compressed archive of the report of each student
+   */
+   private static final class Archive extends ResultsOutput {
+      private final ZipOutputStream zip;
+      private final HashSet<String> names = new HashSet<String>();
+
+      Archive( File file ) throws IOException {
+         super( file );
+         zip = new ZipOutputStream( out );
+      }
+
+      public void write( String assignment, String studentFileName, GradingSession.Result result ) throws IOException {
+         String name = studentFileName.substring( 0, studentFileName.indexOf(".") ) + "_Grade.txt";
+         if( !names.add( name ) )
+            throw new IOException( "More than one student file is named " + studentFileName );
+
+         zip.putNextEntry( new ZipEntry( name ) );
+         zip.write( result.toResultsText().getBytes( StandardCharsets.UTF_8 ) );
+         zip.closeEntry();
+      }
+
+      protected void finish() throws IOException {
+         zip.finish();
+      }
+   }
+}
@@ -0,0 +1,66 @@
+package perf;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+   AnswerFormatBenchmark.java
+
+   The small checks that run on every answer: converting fractions to decimals and checking whether
+   an answer is a number. Each invocation works through a batch of answers from the synthetic
+   student files, so the mix of numbers, fractions, words and lists is realistic
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnswerFormatBenchmark {
+
+   @Param({"100", "1000"})
+   public int answers;
+
+   private String[] batch;
+
+   @Setup
+   public void setUp() {
+      List<String> lines = SyntheticData.studentLines( answers, 0 );
+      batch = new String[ answers ];
+      for( int i = 0; i < answers; i++ ) {
+         String line = lines.get(i);
+         batch[i] = line.substring( line.indexOf(".") + 1 ).trim().toLowerCase();
+      }
+   }
+
+   @Benchmark
+   public int checkAndConvertToDecimal() {
+      int length = 0;
+      for( String answer : batch )
+         length += GraderHooks.checkAndConvertToDecimal( answer, true ).length();
+      return length;
+   }
+
+   @Benchmark
+   public int isNumeric() {
+      int numbers = 0;
+      for( String answer : batch )
+         if( GraderHooks.isNumeric( answer ) ) numbers++;
+      return numbers;
+   }
+}
@@ -0,0 +1,243 @@
+package perf;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+   GraderHooks.java
+
+   Grader and its helper classes are in the default package, which cannot be imported from a named
+   package such as this one. These method handles reach them instead. The handles are static final,
+   so the JIT compiler inlines them and they add nothing to what is measured
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+*/
+final class GraderHooks {
+
+   private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+   private static final MethodHandle GRADE_TEXT_FILE          = handle( "Grader", "gradeTextFile", File.class, File.class, "GradingSession" );
+   private static final MethodHandle IS_NUMERIC               = handle( "Grader", "isNumeric", String.class );
+   private static final MethodHandle ADD_MACRO_SUBSTITUTIONS  = handle( "Grader", "addMacroSubstitutions", String.class );
+   private static final MethodHandle REORDER_FILE             = handle( "Grader", "reorderFile", File.class );
+   private static final MethodHandle GET_STATISTICS           = handle( "Grader", "getStatistics", String.class, int.class );
+   private static final MethodHandle CHECK_AND_CONVERT        = handle( "GradingSession", "checkAndConvertToDecimal", String.class, boolean.class );
+   private static final MethodHandle COMPILE_KEY              = handle( "AnswerKey", "compile", List.class );
+   private static final MethodHandle TO_LIST_KEY              = handle( "AnswerKey", "toListKey", String.class );
+   private static final MethodHandle FIND_MATCH               = handle( "AnswerKey", "findMatch", int.class, "AnswerKey$Response", boolean.class );
+   private static final MethodHandle GRADE                    = handle( "GradingSession", "grade", "GradingSession$Submission" );
+   private static final MethodHandle TO_RESULTS_TEXT          = handle( "GradingSession$Result", "toResultsText" );
+   private static final MethodHandle FROM_LINES               = handle( "GradingSession$Submission", "fromLines", String.class, List.class );
+   private static final MethodHandle NEW_RESPONSE             = constructor( "AnswerKey$Response", String.class );
+   private static final MethodHandle NEW_SESSION              = constructor( "GradingSession", "GraderSettings", "AnswerKey", boolean.class );
+   private static final MethodHandle NEW_SETTINGS             = constructor( "GraderSettings", boolean.class, boolean.class, int.class,
+                                                                             boolean.class, boolean.class, boolean.class, boolean.class, boolean.class );
+
+   private GraderHooks() {}
+
+   static String gradeTextFile( File studentFile, File solutionFile, Object session ) {
+      try {
+         return (String)GRADE_TEXT_FILE.invokeExact( studentFile, solutionFile, session );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   static boolean isNumeric( String str ) {
+      try {
+         return (boolean)IS_NUMERIC.invokeExact( str );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   static void addMacroSubstitutions( String fileName ) {
+      try {
+         ADD_MACRO_SUBSTITUTIONS.invokeExact( fileName );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   static ArrayList<String> reorderFile( File file ) {
+      try {
+         return (ArrayList<String>)REORDER_FILE.invokeExact( file );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   static String getStatistics( String subsetName, int defaultPointValue ) {
+      try {
+         return (String)GET_STATISTICS.invokeExact( subsetName, defaultPointValue );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   static String checkAndConvertToDecimal( String solution, boolean convertFractionsToDecimals ) {
+      try {
+         return (String)CHECK_AND_CONVERT.invokeExact( solution, convertFractionsToDecimals );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   /**
+      @return Object The compiled AnswerKey
+   */
+   static Object compileKey( List<String> lines ) {
+      try {
+         return COMPILE_KEY.invokeExact( lines );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   static String toListKey( String list ) {
+      try {
+         return (String)TO_LIST_KEY.invokeExact( list );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   static int findMatch( Object key, int problem, Object response, boolean listOrderMatters ) {
+      try {
+         return (int)FIND_MATCH.invokeExact( key, problem, response, listOrderMatters );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   /**
+      @return Object The GradingSession.Result
+   */
+   static Object grade( Object session, Object submission ) {
+      try {
+         return GRADE.invokeExact( session, submission );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   static String toResultsText( Object result ) {
+      try {
+         return (String)TO_RESULTS_TEXT.invokeExact( result );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   /**
+      @return Object The GradingSession.Submission
+   */
+   static Object submission( String student, List<String> lines ) {
+      try {
+         return FROM_LINES.invokeExact( student, lines );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   /**
+      @return Object The AnswerKey.Response
+   */
+   static Object response( String text ) {
+      try {
+         return NEW_RESPONSE.invokeExact( text );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   /**
+      @return Object The GradingSession
+   */
+   static Object session( Object settings, Object key, boolean cacheVerdicts ) {
+      try {
+         return NEW_SESSION.invokeExact( settings, key, cacheVerdicts );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   /**
+      The default settings, except that no results files are written and list order does not matter
+
+      @return Object The GraderSettings
+   */
+   static Object settings() {
+      try {
+         return NEW_SETTINGS.invokeExact( false, true, 1, false, false, true, false, true );
+      } catch( Throwable t ) {
+         throw rethrow( t );
+      }
+   }
+
+   /**
+      Find a method or constructor parameter type. Strings are the names of default package classes
+
+      @param types The parameter types, as Classes or class names
+      @return Class[] The parameter types
+   */
+   private static Class<?>[] toClasses( Object[] types ) throws ClassNotFoundException {
+      Class<?>[] classes = new Class<?>[ types.length ];
+      for( int i = 0; i < types.length; i++ )
+         classes[i] = types[i] instanceof Class ? (Class<?>)types[i] : Class.forName( (String)types[i] );
+      return classes;
+   }
+
+   /**
+      Get a handle to a method, with every default package type replaced by Object so that it can be
+      called from here with invokeExact. Instance methods take the object as their first argument
+   */
+   private static MethodHandle handle( String className, String methodName, Object... parameterTypes ) {
+      try {
+         Method method = Class.forName( className ).getDeclaredMethod( methodName, toClasses( parameterTypes ) );
+         method.setAccessible( true );
+         return erase( LOOKUP.unreflect( method ) );
+      } catch( ReflectiveOperationException e ) {
+         throw new ExceptionInInitializerError( e );
+      }
+   }
+
+   private static MethodHandle constructor( String className, Object... parameterTypes ) {
+      try {
+         Constructor<?> constructor = Class.forName( className ).getDeclaredConstructor( toClasses( parameterTypes ) );
+         constructor.setAccessible( true );
+         return erase( LOOKUP.unreflectConstructor( constructor ) );
+      } catch( ReflectiveOperationException e ) {
+         throw new ExceptionInInitializerError( e );
+      }
+   }
+
+   private static MethodHandle erase( MethodHandle handle ) {
+      MethodType type = handle.type();
+      for( int i = 0; i < type.parameterCount(); i++ )
+         if( isGraderClass( type.parameterType(i) ) )
+            type = type.changeParameterType( i, Object.class );
+      if( isGraderClass( type.returnType() ) )
+         type = type.changeReturnType( Object.class );
+
+      return handle.asType( type );
+   }
+
+   private static boolean isGraderClass( Class<?> c ) {
+      return !c.isPrimitive() && c.getPackageName().isEmpty();
+   }
+
+   private static RuntimeException rethrow( Throwable t ) {
+      if( t instanceof RuntimeException ) return (RuntimeException)t;
+      if( t instanceof Error ) throw (Error)t;
+      return new RuntimeException( t );
+   }
+}
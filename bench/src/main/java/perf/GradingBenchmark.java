@@ -0,0 +1,128 @@
+package perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+   GradingBenchmark.java
+
+   Grading one student against a solution file of a given size: the whole file (reading the student
+   file and writing the results text), an in-memory submission, compiling the solution file, and
+   matching list answers
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GradingBenchmark {
+
+   private static final int STUDENTS = 16;
+
+   @Param({"50", "500", "5000"})
+   public int problems;
+
+   private File folder;
+   private File solutionFile;
+   private File[] studentFiles;
+   private List<String> solutionLines;
+   private Object session;
+   private Object[] submissions;
+   private Object key;
+   private int[] listProblems;
+   private Object[] listResponses;
+   private String[] listAnswers;
+   private int next = 0;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      folder = SyntheticData.createTempFolder();
+      solutionFile = SyntheticData.writeAssignment( folder, "Bench", problems, STUDENTS );
+      studentFiles = new File[ STUDENTS ];
+      submissions = new Object[ STUDENTS ];
+      for( int s = 0; s < STUDENTS; s++ ) {
+         studentFiles[s] = new File( folder, "Student" + s + "_Bench.txt" );
+         submissions[s] = GraderHooks.submission( "Student" + s, SyntheticData.studentLines( problems, s ) );
+      }
+
+      solutionLines = SyntheticData.solutionLines( problems );
+      key = GraderHooks.compileKey( solutionLines );
+      session = GraderHooks.session( GraderHooks.settings(), key, false );
+
+      //List problems, with answers in and out of order
+      ArrayList<Integer> lists = new ArrayList<Integer>();
+      for( int i = 1; i <= problems; i++ )
+         if( i % 5 == 4 ) lists.add( i - 1 );
+      listProblems = new int[ lists.size() ];
+      listResponses = new Object[ lists.size() ];
+      listAnswers = new String[ lists.size() ];
+      for( int p = 0; p < listProblems.length; p++ ) {
+         int n = (lists.get(p) + 1) * 7;
+         listProblems[p] = lists.get(p);
+         listAnswers[p] = p % 2 == 0 ? "(" + (n + 1) + "," + n + ")" : n + "," + (n + 1);
+         listResponses[p] = GraderHooks.response( listAnswers[p] );
+      }
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws IOException {
+      SyntheticData.delete( folder );
+   }
+
+   private int nextStudent() {
+      next = (next + 1) % STUDENTS;
+      return next;
+   }
+
+   @Benchmark
+   public String gradeTextFile() {
+      return GraderHooks.gradeTextFile( studentFiles[ nextStudent() ], solutionFile, session );
+   }
+
+   @Benchmark
+   public Object gradeSubmission() {
+      return GraderHooks.grade( session, submissions[ nextStudent() ] );
+   }
+
+   @Benchmark
+   public Object compileKey() {
+      return GraderHooks.compileKey( solutionLines );
+   }
+
+   @Benchmark
+   public int matchLists() {
+      int matched = 0;
+      for( int p = 0; p < listProblems.length; p++ )
+         matched += GraderHooks.findMatch( key, listProblems[p], listResponses[p], false );
+      return matched;
+   }
+
+   @Benchmark
+   public int listKeys() {
+      int length = 0;
+      for( int p = 0; p < listAnswers.length; p++ )
+         length += GraderHooks.toListKey( listAnswers[p] ).length();
+      return length;
+   }
+}
@@ -0,0 +1,114 @@
+package perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+   SolutionFileBenchmark.java
+
+   The menu options that rewrite or read whole files: adding macro substitutions to a solution
+   file, reordering a shuffled file, and generating statistics for a set of graded files.
+   addMacroSubstitutions and reorderFile rewrite their file, so it is put back before each call.
+
+   Grader looks for graded files in the working folder, so the statistics benchmark writes its
+   BenchStudent*_BenchStats*_Grade.txt files there, and removes them afterwards
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolutionFileBenchmark {
+
+   @Param({"50", "500"})
+   public int problems;
+
+   @Param({"30"})
+   public int students;
+
+   private File folder;
+   private File solutionFile;
+   private File shuffledFile;
+   private byte[] solutionBytes;
+   private byte[] shuffledBytes;
+   private String statsName;
+   private final ArrayList<File> gradeFiles = new ArrayList<File>();
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      folder = SyntheticData.createTempFolder();
+      solutionFile = new File( folder, "Solutions_Bench.txt" );
+      List<String> lines = SyntheticData.solutionLines( problems );
+      SyntheticData.write( solutionFile, lines );
+      solutionBytes = Files.readAllBytes( solutionFile.toPath() );
+
+      ArrayList<String> shuffled = new ArrayList<String>( lines );
+      Collections.shuffle( shuffled, new Random( SyntheticData.SEED ) );
+      shuffledFile = new File( folder, "Shuffled_Bench.txt" );
+      SyntheticData.write( shuffledFile, shuffled );
+      shuffledBytes = Files.readAllBytes( shuffledFile.toPath() );
+
+      //Graded files for the statistics
+      statsName = "BenchStats" + problems;
+      Object session = GraderHooks.session( GraderHooks.settings(), GraderHooks.compileKey( lines ), false );
+      for( int s = 0; s < students; s++ ) {
+         Object result = GraderHooks.grade( session, GraderHooks.submission( "BenchStudent" + s, SyntheticData.studentLines( problems, s ) ) );
+         File gradeFile = new File( "BenchStudent" + s + "_" + statsName + "_Grade.txt" );
+         Files.writeString( gradeFile.toPath(), GraderHooks.toResultsText( result ) );
+         gradeFiles.add( gradeFile );
+      }
+   }
+
+   @Setup(Level.Invocation)
+   public void restoreFiles() throws IOException {
+      Files.write( solutionFile.toPath(), solutionBytes );
+      Files.write( shuffledFile.toPath(), shuffledBytes );
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws IOException {
+      SyntheticData.delete( folder );
+      for( File gradeFile : gradeFiles )
+         gradeFile.delete();
+   }
+
+   @Benchmark
+   public File addMacroSubstitutions() {
+      GraderHooks.addMacroSubstitutions( solutionFile.getPath() );
+      return solutionFile;
+   }
+
+   @Benchmark
+   public ArrayList<String> reorderFile() {
+      return GraderHooks.reorderFile( shuffledFile );
+   }
+
+   @Benchmark
+   public String generateStatistics() {
+      return GraderHooks.getStatistics( statsName, 1 );
+   }
+}
@@ -0,0 +1,118 @@
+package perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+   SyntheticData.java
+
+   Seeded solution files and student answers for the benchmarks. The problems cycle through the
+   kinds in the README example: a number with alternates and partial credit, a word with a comment,
+   a fraction, a list, and a number with range tags. Student answers are mostly correct, with some
+   partial credit answers, wrong answers and blanks
+
+   @author Peter Olson
+   @version 10/19/26 v1.0
+*/
+final class SyntheticData {
+
+   static final long SEED = 42;
+
+   private SyntheticData() {}
+
+   /**
+      @param problems The number of problems
+      @return List The lines of a solution file
+   */
+   static List<String> solutionLines( int problems ) {
+      ArrayList<String> lines = new ArrayList<String>( problems );
+      for( int i = 1; i <= problems; i++ ) {
+         int n = i * 7;
+         switch( i % 5 ) {
+            case 1: lines.add( i + ". " + n + " & " + n + ".0 & " + (n * 4) + ";Multiplied by 2 instead of dividing;0.0 & " + (n - 6) + ";Subtracted instead of added;0.5" ); break;
+            case 2: lines.add( i + ". Rectangle & Rect & Parallelogram & Paralelogram & Square; Can't be a square; 0.5" ); break;
+            case 3: lines.add( i + ". " + (n % 9 + 1) + "/" + (n % 9 + 2) + " & " + String.format( "%.2f", (n % 9 + 1) / (double)(n % 9 + 2) ) ); break;
+            case 4: lines.add( i + ". (" + n + ", " + (n + 1) + ") & " + n + ", " + (n + 1) + " & " + (n + 1) + ", " + n + " | (" + (n + 1) + ", " + n + ") ; Values are switched! ; 0.5" ); break;
+            default: lines.add( i + ". " + n + ".57 ; Range 1.0 & " + n + ".57 ; Range 1.0 to 5.0 ; 0.5 ; Didn't multiply by acceleration?" ); break;
+         }
+      }
+      return lines;
+   }
+
+   /**
+      @param problems The number of problems
+      @param student Which student, so that each student has different answers
+      @return List The lines of a student file
+   */
+   static List<String> studentLines( int problems, int student ) {
+      Random random = new Random( SEED * 31 + student );
+      ArrayList<String> lines = new ArrayList<String>( problems );
+      for( int i = 1; i <= problems; i++ ) {
+         int n = i * 7;
+         int roll = random.nextInt( 100 );
+         String answer;
+         if( roll < 5 )       answer = "";
+         else if( roll < 15 ) answer = "wrong" + random.nextInt( 1000 );
+         else if( roll < 30 ) {
+            switch( i % 5 ) {
+               case 1:  answer = String.valueOf( n - 6 ); break;
+               case 2:  answer = "Square"; break;
+               case 3:  answer = "0." + random.nextInt( 100 ); break;
+               case 4:  answer = (n + 1) + "," + n; break;
+               default: answer = n + 3 + ".1"; break;
+            }
+         } else {
+            switch( i % 5 ) {
+               case 1:  answer = String.valueOf( n ); break;
+               case 2:  answer = random.nextBoolean() ? "Rectangle" : "rect"; break;
+               case 3:  answer = (n % 9 + 1) + "/" + (n % 9 + 2); break;
+               case 4:  answer = "(" + n + ", " + (n + 1) + ")"; break;
+               default: answer = n + ".56"; break;
+            }
+         }
+         lines.add( i + ". " + answer );
+      }
+      return lines;
+   }
+
+   /**
+      Write an assignment to a folder: Solutions_NAME.txt and a file for each student
+
+      @param folder Where to write the files
+      @param assignment The assignment name
+      @param problems The number of problems
+      @param students The number of students
+      @return File The solution file
+   */
+   static File writeAssignment( File folder, String assignment, int problems, int students ) throws IOException {
+      folder.mkdirs();
+      File solutionFile = new File( folder, "Solutions_" + assignment + ".txt" );
+      write( solutionFile, solutionLines( problems ) );
+      for( int s = 0; s < students; s++ )
+         write( new File( folder, "Student" + s + "_" + assignment + ".txt" ), studentLines( problems, s ) );
+      return solutionFile;
+   }
+
+   static void write( File file, List<String> lines ) throws IOException {
+      Files.write( file.toPath(), String.join( "\n", lines ).getBytes( StandardCharsets.UTF_8 ) );
+   }
+
+   static File createTempFolder() throws IOException {
+      return Files.createTempDirectory("grader-bench").toFile();
+   }
+
+   static void delete( File folder ) throws IOException {
+      if( folder == null || !folder.exists() ) return;
+      try( Stream<Path> paths = Files.walk( folder.toPath() ) ) {
+         paths.sorted( Comparator.reverseOrder() ).forEach( path -> path.toFile().delete() );
+      }
+   }
+}